@@ -0,0 +1,136 @@
+import simpleascii.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+
+/**
+ *
+ * Micro benchmarks for the phases of the solver: reading a picture (with the memory-mapped
+ * <tt>PictureLoader</tt> that the solver uses, and with the streaming <tt>AsciiReader</tt> and
+ * <tt>LineParser</tt> for comparison), finding squares, filling squares, filling lines and writing
+ * the solution (<tt>AsciiWriter</tt>). Every phase is run over a grid of picture sizes and ink
+ * densities, and reports the time and the number of bytes allocated per operation.
+ *
+ * The harness has no dependencies, so it runs straight from the IDE or the command line. Each
+ * benchmark is warmed up before it's measured, and setup work (like loading a fresh copy of the
+ * picture) is done outside of the measured part.
+ *
+ * Usage: {@code java PaintBenchmark [sizes, e.g. 200,1000] [densities, e.g. 0.2,0.8]}
+ *
+ */
+public class PaintBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASURED_ITERATIONS = 10;
+    private static final long SEED = 2016;
+
+    interface Operation {
+        void run() throws Exception;
+    }
+
+    private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = { 200, 1000, 4000 };
+        double[] densities = { 0.1, 0.5, 0.9 };
+        if (args.length > 0) {
+            String[] values = args[0].split(",");
+            sizes = new int[values.length];
+            for (int i = 0; i < values.length; i++) {
+                sizes[i] = Integer.parseInt(values[i]);
+            }
+        }
+        if (args.length > 1) {
+            String[] values = args[1].split(",");
+            densities = new double[values.length];
+            for (int i = 0; i < values.length; i++) {
+                densities[i] = Double.parseDouble(values[i]);
+            }
+        }
+
+        System.out.printf("%-18s %6s %8s %12s %12s %14s%n", "benchmark", "size", "density", "avg ms/op", "min ms/op", "alloc KB/op");
+        for (int size : sizes) {
+            for (double density : densities) {
+                runAll(size, density);
+            }
+        }
+    }
+
+    private static void runAll(int size, double density) throws Exception {
+        File inputFile = File.createTempFile("bench", ".in");
+        File outputFile = File.createTempFile("bench", ".out");
+        inputFile.deleteOnExit();
+        outputFile.deleteOnExit();
+
+        PaintGrid picture = new PictureGenerator(SEED).generate(size, size, density);
+        PictureGenerator.write(picture, inputFile);
+
+        PaintGrid readInto = new PaintGrid(0, 0);
+        measure("read loader", size, density, () -> {}, () -> PaintSolver.readPicture(inputFile.getPath(), readInto));
+        measure("read ascii", size, density, () -> {}, () -> readWithAsciiReader(inputFile.getPath(), readInto));
+
+        SquareMap squareMap = new SquareMap();
+        measure("squareMap", size, density, () -> {}, () -> squareMap.compute(picture));
+
+        Painter painter = new Painter();
+        measure("fillSquareGroups", size, density, () -> painter.load(picture), () -> painter.fillSquareGroups(squareMap));
+
+        measure("findAndFillLines", size, density, () -> painter.load(picture), painter::findAndFillLines);
+
+        CommandBuffer commands = new PaintSolver(Runnable::run).solve(picture);
+        measure("write", size, density, () -> {}, () -> PracticeProblem.writeData(outputFile.getPath(), commands));
+    }
+
+    // Reads the picture row by row with a streaming AsciiReader, splitting every row with LineParser
+    private static void readWithAsciiReader(String filename, PaintGrid picture) throws IOException {
+        try (AsciiReader reader = new AsciiReader(filename)) {
+            reader.performStreamingRead();
+            List<Integer> dimension = reader.nextLine().splitBy(" ").getSectionsAsInts(Radix.Decimal);
+            int h = dimension.get(0);
+            int w = dimension.get(1);
+            picture.reset(w, h);
+            for (int y = 0; y < h; y++) {
+                List<Boolean> list = reader.nextLine().splitBy("").getSectionsAs((s) -> s.equals("#"));
+                for (int x = 0; x < w; x++) {
+                    picture.setTarget(x, y, list.get(x));
+                }
+            }
+        }
+    }
+
+    private static void measure(String name, int size, double density, Runnable setup, Operation operation) throws Exception {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            setup.run();
+            operation.run();
+        }
+
+        long totalNanos = 0;
+        long minNanos = Long.MAX_VALUE;
+        long totalBytes = 0;
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            setup.run();
+            long bytesBefore = allocatedBytes();
+            long start = System.nanoTime();
+            operation.run();
+            long nanos = System.nanoTime() - start;
+            totalBytes += allocatedBytes() - bytesBefore;
+            totalNanos += nanos;
+            minNanos = Math.min(minNanos, nanos);
+        }
+
+        System.out.printf("%-18s %6d %8.2f %12.3f %12.3f %14d%n", name, size, density,
+                totalNanos / 1e6 / MEASURED_ITERATIONS, minNanos / 1e6,
+                totalBytes / 1024 / MEASURED_ITERATIONS);
+    }
+
+    // Bytes allocated by the current thread so far, or 0 if the JVM can't tell
+    private static long allocatedBytes() {
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}
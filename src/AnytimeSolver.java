@@ -0,0 +1,202 @@
+import java.io.IOException;
+
+/**
+ *
+ * Solves a picture within a time budget, returning the best complete solution found when the time
+ * is up. The solver works in stages that each produce a valid solution:
+ *
+ *  1. baseline: every row run of target cells as one line, found 64 cells at a time,
+ *  2. line: the line-only greedy strategy,
+ *  3. square + line: the square and line greedy strategy,
+ *  4. set cover: <tt>SetCoverSolver</tt>,
+ *  5. local search: <tt>LocalSearchOptimizer</tt> on the best solution, for the rest of the budget.
+ *
+ * The baseline is always made. The greedy stages and the set cover check the deadline as they go
+ * and stop when it passes. The cells a greedy stage leaves are painted with row lines, so an
+ * interrupted stage is still a complete solution. The clock is checked between stages. The setup of
+ * a stage (such as the square map or the coverage counts of the local search) can't be cut short,
+ * so a stage is only started if at least as much time is left as the last stage took and as its
+ * setup is estimated to take for a picture of this size. Without a time limit, every stage but
+ * the local search (which needs a budget to work within) runs to the end.
+ *
+ * An <tt>AnytimeSolver</tt> reuses its buffers for the next picture, and must only be used by one
+ * thread at a time.
+ *
+ * Usage: {@code java AnytimeSolver <picture .in file> <budget ms>}
+ *
+ */
+public class AnytimeSolver {
+
+    // Time kept back from the local search for building its result
+    private static final long OPTIMIZATION_RESERVE_MILLIS = 5;
+
+    // Rough setup cost of the stages: the greedy stages index and sort all runs before placing the
+    // first line (estimated per run of the baseline), and some stages do per cell work up front
+    private static final long LINE_NANOS_PER_RUN = 1000;
+    private static final long SQUARE_LINE_NANOS_PER_CELL = 25;
+    private static final long SET_COVER_NANOS_PER_CELL = 150;
+    private static final long LOCAL_SEARCH_NANOS_PER_CELL = 50;
+
+    private final SquareMap squareMap = new SquareMap();
+    private final Painter squareLinePainter = new Painter();
+    private final Painter linePainter = new Painter();
+    private final SetCoverSolver setCoverSolver = new SetCoverSolver();
+    private final LocalSearchOptimizer optimizer = new LocalSearchOptimizer(2016);
+
+    private CommandBuffer best;
+    private String bestStage;
+    private int stagesRun;
+    private long lastStageNanos;
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Usage: java AnytimeSolver <picture .in file> <budget ms>");
+            System.exit(1);
+        }
+        PaintGrid picture = new PaintGrid(0, 0);
+        try {
+            PaintSolver.readPicture(args[0], picture);
+        } catch (IOException e) {
+            System.out.println("Could not read input file!");
+            System.exit(1);
+        }
+
+        long start = System.nanoTime();
+        AnytimeSolver solver = new AnytimeSolver();
+        CommandBuffer commands = solver.solve(picture, Long.parseLong(args[1]));
+        long millis = (System.nanoTime() - start) / 1000000;
+
+        System.out.println(args[0] + ": " + commands.size() + " commands from the " + solver.getBestStage()
+                + " stage (" + solver.getStagesRun() + " stages run) in " + millis + " ms");
+        PracticeProblem.writeData(args[0] + ".out", commands);
+    }
+
+    /**
+     * Returns the name of the stage the last solution came from.
+     */
+    public String getBestStage() {
+        return bestStage;
+    }
+
+    /**
+     * Returns the number of stages (including the baseline) the last solve started.
+     */
+    public int getStagesRun() {
+        return stagesRun;
+    }
+
+    /**
+     * Solves the picture (which is not painted on) in about budgetMillis milliseconds and returns
+     * the best solution found. A budget of Long.MAX_VALUE means no limit. The returned buffer is
+     * not affected by later calls.
+     */
+    public CommandBuffer solve(PaintGrid picture, long budgetMillis) {
+        Deadline deadline = Deadline.after(budgetMillis);
+        best = null;
+        stagesRun = 0;
+
+        long start = System.nanoTime();
+        CommandBuffer baseline = new CommandBuffer();
+        addRuns(picture, baseline);
+        stagesRun = 1;
+        offer(baseline, "baseline", start);
+
+        long cells = (long) picture.getWidth() * picture.getHeight();
+        long lineSetupNanos = baseline.size() * LINE_NANOS_PER_RUN;
+        if (startStage(deadline, lineSetupNanos)) {
+            start = System.nanoTime();
+            linePainter.load(picture);
+            linePainter.findAndFillLines(deadline);
+            offer(finish(linePainter), "line", start);
+        }
+
+        if (startStage(deadline, lineSetupNanos + cells * SQUARE_LINE_NANOS_PER_CELL)) {
+            start = System.nanoTime();
+            squareLinePainter.load(picture);
+            squareMap.compute(picture);
+            if (squareLinePainter.fillSquareGroups(squareMap, deadline)) {
+                squareLinePainter.findAndFillLines(deadline);
+            }
+            offer(finish(squareLinePainter), "square + line", start);
+        }
+
+        if (startStage(deadline, cells * SET_COVER_NANOS_PER_CELL)) {
+            start = System.nanoTime();
+            offer(setCoverSolver.solve(picture, deadline), "set cover", start);
+        }
+
+        if (deadline.isBounded() && startStage(deadline, cells * LOCAL_SEARCH_NANOS_PER_CELL)) {
+            long optimizationMillis = Math.max(1, deadline.remainingMillis() - OPTIMIZATION_RESERVE_MILLIS);
+            start = System.nanoTime();
+            offer(optimizer.optimize(picture, best, optimizationMillis), "local search", start);
+        }
+
+        CommandBuffer solution = best;
+        best = null;
+        return solution;
+    }
+
+    private boolean startStage(Deadline deadline, long setupNanos) {
+        long remainingNanos = deadline.remainingNanos();
+        if (remainingNanos <= 0 || remainingNanos < lastStageNanos || remainingNanos < setupNanos) {
+            return false;
+        }
+        stagesRun++;
+        return true;
+    }
+
+    // Keeps a copy of the solution if it's the best so far
+    private void offer(CommandBuffer solution, String stage, long start) {
+        lastStageNanos = System.nanoTime() - start;
+        if (best == null || solution.size() < best.size()) {
+            best = solution.snapshot();
+            bestStage = stage;
+        }
+    }
+
+    // The commands of the painter plus row lines for the cells it has left. After the lines are
+    // all placed, only single cells are left, as in Painter.fillCells.
+    private static CommandBuffer finish(Painter painter) {
+        CommandBuffer commands = painter.getCommands().snapshot();
+        addRuns(painter.getPicture(), commands);
+        return commands;
+    }
+
+    // Adds every row run of cells left to paint as one line (or a 1x1 square), 64 cells at a time
+    private static void addRuns(PaintGrid picture, CommandBuffer commands) {
+        int w = picture.getWidth();
+        int wordsPerRow = picture.getWordsPerRow();
+        for (int y = 0; y < picture.getHeight(); y++) {
+            int start = -1;
+            for (int word = 0; word < wordsPerRow; word++) {
+                long bits = picture.getTargetWord(y, word) & ~picture.getPaintedWord(y, word);
+                int base = word << 6;
+                int position = 0;
+                while (position < 64) {
+                    long next = (start >= 0 ? ~bits : bits) & (-1L << position);
+                    if (next == 0) {
+                        break;
+                    }
+                    position = Long.numberOfTrailingZeros(next);
+                    if (start >= 0) {
+                        addRun(commands, y, start, base + position - 1);
+                        start = -1;
+                    } else {
+                        start = base + position;
+                    }
+                }
+            }
+            if (start >= 0) {
+                addRun(commands, y, start, w - 1);
+            }
+        }
+    }
+
+    private static void addRun(CommandBuffer commands, int y, int start, int end) {
+        if (start == end) {
+            commands.addPaintSquare(start, y, 0);
+        } else {
+            commands.addPaintLine(start, y, end, y);
+        }
+    }
+}
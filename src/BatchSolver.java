@@ -0,0 +1,211 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ *
+ * Solves a whole directory (or glob) of .in files and writes a .out file next to each of them.
+ *
+ * Files are read on a small I/O pool and solved on a bounded pool of solver threads, each with
+ * its own reused <tt>PaintSolver</tt>. Reading is throttled so that only a limited number of read
+ * but not yet solved pictures are held in memory, which lets the next inputs be read while the
+ * current ones are solved without reading the whole directory ahead.
+ *
+ * Solutions are cached in the (optional) cache directory, so pictures that were solved before by an
+ * earlier run are not solved again.
+ *
+ * Usage: {@code java BatchSolver <directory | glob> [solver threads] [local search ms per file] [cache directory]}
+ *
+ */
+public class BatchSolver {
+
+    private static final int IO_THREADS = 2;
+    private static final long CACHE_BYTES = 1L << 30;
+
+    static class Result {
+        String filename;
+        int w, h;
+        int squareLineSize, lineSize, chosenSize;
+        long readMillis, solveMillis, writeMillis;
+        boolean cached;
+        String error;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: java BatchSolver <directory | glob> [solver threads] [local search ms per file] [cache directory]");
+            System.exit(1);
+        }
+        int solverThreads = (args.length > 1)
+                ? Integer.parseInt(args[1])
+                : Runtime.getRuntime().availableProcessors();
+        long optimizationMillis = (args.length > 2) ? Long.parseLong(args[2]) : 0;
+        SolutionCache cache = null;
+        if (args.length > 3) {
+            try {
+                cache = new SolutionCache(new File(args[3]), CACHE_BYTES);
+            } catch (IOException e) {
+                System.out.println("Could not create the cache directory!");
+                System.exit(1);
+            }
+        }
+
+        List<File> files = findInputFiles(args[0]);
+        if (files.isEmpty()) {
+            System.out.println("No input files found!");
+            System.exit(1);
+        }
+
+        long start = System.nanoTime();
+        List<Result> results = solveAll(files, solverThreads, optimizationMillis, cache);
+        long totalMillis = (System.nanoTime() - start) / 1000000;
+
+        printSummary(results, totalMillis);
+    }
+
+    /**
+     * Returns the .in files in a directory, or the files matching a glob such as "pictures/*.in".
+     */
+    public static List<File> findInputFiles(String directoryOrGlob) {
+        File directory = new File(directoryOrGlob);
+        PathMatcher matcher;
+        if (directory.isDirectory()) {
+            matcher = FileSystems.getDefault().getPathMatcher("glob:*.in");
+        } else {
+            directory = directory.getAbsoluteFile().getParentFile();
+            matcher = FileSystems.getDefault().getPathMatcher("glob:" + new File(directoryOrGlob).getName());
+        }
+
+        List<File> files = new ArrayList<>();
+        File[] candidates = directory.listFiles();
+        if (candidates != null) {
+            for (File file : candidates) {
+                Path name = file.toPath().getFileName();
+                if (file.isFile() && matcher.matches(name)) {
+                    files.add(file);
+                }
+            }
+        }
+        files.sort((f0, f1) -> f0.getName().compareTo(f1.getName()));
+        return files;
+    }
+
+    /**
+     * Solves all files on solverThreads threads and returns one result per file, in file order.
+     * Each solution is improved by local search for optimizationMillis milliseconds (0 for none),
+     * and solutions are looked up in and stored in the cache unless it's null.
+     */
+    public static List<Result> solveAll(List<File> files, int solverThreads, long optimizationMillis, SolutionCache cache) {
+        ExecutorService ioPool = Executors.newFixedThreadPool(IO_THREADS);
+        ExecutorService solvePool = Executors.newFixedThreadPool(solverThreads);
+
+        // The strategies of one picture run on the solver thread itself, since the pool
+        // already keeps every core busy with different pictures
+        ThreadLocal<PaintSolver> solvers = ThreadLocal.withInitial(() -> {
+            PaintSolver solver = new PaintSolver(Runnable::run);
+            solver.setOptimizationBudget(optimizationMillis);
+            solver.setCache(cache);
+            return solver;
+        });
+
+        // Pictures that are read (or being read) but not solved yet
+        Semaphore readAhead = new Semaphore(2 * solverThreads);
+
+        List<CompletableFuture<Result>> futures = new ArrayList<>();
+        try {
+            for (File file : files) {
+                readAhead.acquireUninterruptibly();
+
+                Result result = new Result();
+                result.filename = file.getPath();
+
+                CompletableFuture<Result> future = CompletableFuture.supplyAsync(() -> {
+                    long t0 = System.nanoTime();
+                    PaintGrid picture = new PaintGrid(0, 0);
+                    try {
+                        PaintSolver.readPicture(result.filename, picture);
+                    } catch (IOException | RuntimeException e) {
+                        // Not solved, so the read-ahead permit is released by the next stage
+                        result.error = "could not read (" + e + ")";
+                        return null;
+                    } finally {
+                        result.readMillis = (System.nanoTime() - t0) / 1000000;
+                    }
+                    result.w = picture.getWidth();
+                    result.h = picture.getHeight();
+                    return picture;
+                }, ioPool).thenApplyAsync(picture -> {
+                    readAhead.release();
+                    if (picture == null) {
+                        return null;
+                    }
+                    long t0 = System.nanoTime();
+                    PaintSolver solver = solvers.get();
+                    CommandBuffer commands = solver.solve(picture);
+                    result.cached = solver.isLastSolutionCached();
+                    result.squareLineSize = solver.getSquareLineSolutionSize();
+                    result.lineSize = solver.getLineSolutionSize();
+                    result.chosenSize = commands.size();
+                    result.solveMillis = (System.nanoTime() - t0) / 1000000;
+                    return commands;
+                }, solvePool).thenApplyAsync(commands -> {
+                    if (commands != null) {
+                        long t0 = System.nanoTime();
+                        try {
+                            PracticeProblem.writeSolution(result.filename + ".out", commands);
+                        } catch (IOException e) {
+                            result.error = "could not write (" + e + ")";
+                        } finally {
+                            result.writeMillis = (System.nanoTime() - t0) / 1000000;
+                        }
+                    }
+                    return result;
+                }, ioPool).exceptionally(e -> {
+                    result.error = String.valueOf(e.getCause() != null ? e.getCause() : e);
+                    return result;
+                });
+                futures.add(future);
+            }
+
+            List<Result> results = new ArrayList<>();
+            for (CompletableFuture<Result> future : futures) {
+                results.add(future.join());
+            }
+            return results;
+        } finally {
+            ioPool.shutdown();
+            solvePool.shutdown();
+        }
+    }
+
+    public static void printSummary(List<Result> results, long totalMillis) {
+        int nameWidth = "file".length();
+        for (Result result : results) {
+            nameWidth = Math.max(nameWidth, result.filename.length());
+        }
+        String format = "%-" + nameWidth + "s %11s %11s %11s %11s %9s %9s %9s%n";
+
+        System.out.printf(format, "file", "size", "square+line", "line", "commands", "read ms", "solve ms", "write ms");
+        long commandSum = 0;
+        for (Result result : results) {
+            if (result.error != null) {
+                System.out.printf("%-" + nameWidth + "s FAILED: %s%n", result.filename, result.error);
+                continue;
+            }
+            commandSum += result.chosenSize;
+            System.out.printf(format, result.filename, result.h + "x" + result.w,
+                    result.cached ? "cached" : result.squareLineSize, result.cached ? "cached" : result.lineSize, result.chosenSize,
+                    result.readMillis, result.solveMillis, result.writeMillis);
+        }
+        System.out.println();
+        System.out.println(results.size() + " files, " + commandSum + " commands in total, " + totalMillis + " ms");
+    }
+}
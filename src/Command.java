@@ -1,9 +1,23 @@
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
 public interface Command {
 
     int getX();
     int getY();
     int getS();
 
-    abstract void paint(PracticeProblem.State[][] wall);
+    abstract void paint(PaintGrid wall);
+
+    /**
+     * Writes the command in the .out format, same as toString() but without creating any strings.
+     */
+    void writeTo(Appendable out) throws IOException;
+
+    /**
+     * Puts the command in the .out format as Ascii bytes, same as toString() but without creating
+     * any strings.
+     */
+    void writeTo(ByteBuffer out);
 }
@@ -0,0 +1,303 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ *
+ * A compact list of commands. Instead of one object per command, the opcode and operands of all
+ * commands are kept in parallel primitive arrays, so a command takes 17 bytes and appending one
+ * allocates nothing (apart from growing the arrays now and then).
+ *
+ * The operands are stored in the coordinates of the command classes:
+ *
+ *  - PAINT_SQUARE: r, c and s (s is kept in the r2 column),
+ *  - PAINT_LINE: r1, c1, r2 and c2,
+ *  - ERASE_CELL: r and c.
+ *
+ * Commands can be replayed onto a grid and written in the .out format straight from the arrays.
+ * {@code get(i)} and iteration create <tt>Command</tt> objects for code that wants them.
+ *
+ */
+public class CommandBuffer implements Iterable<Command> {
+
+    public static final byte PAINT_SQUARE = 0;
+    public static final byte PAINT_LINE = 1;
+    public static final byte ERASE_CELL = 2;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int size;
+    private byte[] opcodes;
+    private int[] r, c, r2, c2;
+
+    public CommandBuffer() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public CommandBuffer(int capacity) {
+        opcodes = new byte[capacity];
+        r = new int[capacity];
+        c = new int[capacity];
+        r2 = new int[capacity];
+        c2 = new int[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all commands. The arrays are kept for reuse.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Removes all commands from index newSize on, e.g. to go back to an earlier size.
+     */
+    public void truncate(int newSize) {
+        if (newSize < 0 || newSize > size) {
+            throw new IndexOutOfBoundsException();
+        }
+        size = newSize;
+    }
+
+    //
+    // Appending
+    //
+
+    public void addPaintSquare(int r, int c, int s) {
+        add(PAINT_SQUARE, r, c, s, 0);
+    }
+
+    public void addPaintLine(int r1, int c1, int r2, int c2) {
+        add(PAINT_LINE, r1, c1, r2, c2);
+    }
+
+    public void addEraseCell(int r, int c) {
+        add(ERASE_CELL, r, c, 0, 0);
+    }
+
+    public void add(Command command) {
+        if (command instanceof PaintSquare) {
+            PaintSquare square = (PaintSquare) command;
+            addPaintSquare(square.r, square.c, square.s);
+        } else if (command instanceof PaintLine) {
+            PaintLine line = (PaintLine) command;
+            addPaintLine(line.r1, line.c1, line.r2, line.c2);
+        } else if (command instanceof EraseCell) {
+            EraseCell erase = (EraseCell) command;
+            addEraseCell(erase.r, erase.c);
+        } else {
+            throw new IllegalArgumentException("Unknown command " + command);
+        }
+    }
+
+    /**
+     * Appends all commands of another buffer.
+     */
+    public void addAll(CommandBuffer other) {
+        ensureCapacity(size + other.size);
+        System.arraycopy(other.opcodes, 0, opcodes, size, other.size);
+        System.arraycopy(other.r, 0, r, size, other.size);
+        System.arraycopy(other.c, 0, c, size, other.size);
+        System.arraycopy(other.r2, 0, r2, size, other.size);
+        System.arraycopy(other.c2, 0, c2, size, other.size);
+        size += other.size;
+    }
+
+    private void add(byte opcode, int a, int b, int d, int e) {
+        if (size == opcodes.length) {
+            ensureCapacity(Math.max(INITIAL_CAPACITY, 2 * size));
+        }
+        opcodes[size] = opcode;
+        r[size] = a;
+        c[size] = b;
+        r2[size] = d;
+        c2[size] = e;
+        size++;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > opcodes.length) {
+            opcodes = Arrays.copyOf(opcodes, capacity);
+            r = Arrays.copyOf(r, capacity);
+            c = Arrays.copyOf(c, capacity);
+            r2 = Arrays.copyOf(r2, capacity);
+            c2 = Arrays.copyOf(c2, capacity);
+        }
+    }
+
+    //
+    // Copies
+    //
+
+    /**
+     * Returns a copy of the commands, sized to fit, that is not affected by later changes.
+     */
+    public CommandBuffer snapshot() {
+        CommandBuffer copy = new CommandBuffer(size);
+        copy.addAll(this);
+        return copy;
+    }
+
+    /**
+     * Replaces the commands with the ones of another buffer, reusing the arrays if they are large enough.
+     */
+    public void copyFrom(CommandBuffer other) {
+        size = 0;
+        addAll(other);
+    }
+
+    //
+    // Reading
+    //
+
+    public byte getOpcode(int i) {
+        checkIndex(i);
+        return opcodes[i];
+    }
+
+    public int getR(int i) {
+        checkIndex(i);
+        return r[i];
+    }
+
+    public int getC(int i) {
+        checkIndex(i);
+        return c[i];
+    }
+
+    /**
+     * Returns s of a PAINT_SQUARE.
+     */
+    public int getS(int i) {
+        checkIndex(i);
+        return r2[i];
+    }
+
+    public int getR2(int i) {
+        checkIndex(i);
+        return r2[i];
+    }
+
+    public int getC2(int i) {
+        checkIndex(i);
+        return c2[i];
+    }
+
+    /**
+     * Creates a <tt>Command</tt> object for command i.
+     */
+    public Command get(int i) {
+        checkIndex(i);
+        switch (opcodes[i]) {
+            case PAINT_SQUARE: return new PaintSquare(r[i], c[i], r2[i]);
+            case PAINT_LINE: return new PaintLine(r[i], c[i], r2[i], c2[i]);
+            default: return new EraseCell(r[i], c[i]);
+        }
+    }
+
+    @Override
+    public Iterator<Command> iterator() {
+        return new Iterator<Command>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Command next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return get(next++);
+            }
+        };
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
+    //
+    // Replaying and writing, same as the paint and writeTo methods of the command classes
+    //
+
+    public void paint(int i, PaintGrid wall) {
+        checkIndex(i);
+        switch (opcodes[i]) {
+            case PAINT_SQUARE:
+                wall.paintRect(r[i] - r2[i], c[i] - r2[i], r[i] + r2[i], c[i] + r2[i]);
+                break;
+            case PAINT_LINE:
+                if (r[i] == r2[i]) {
+                    wall.paintColumn(r[i], c[i], c2[i]);
+                } else {
+                    wall.paintRow(c[i], r[i], r2[i]);
+                }
+                break;
+            default:
+                wall.eraseCell(r[i], c[i]);
+        }
+    }
+
+    /**
+     * Replays all commands onto the wall, in order.
+     */
+    public void paint(PaintGrid wall) {
+        for (int i = 0; i < size; i++) {
+            paint(i, wall);
+        }
+    }
+
+    public void writeTo(int i, Appendable out) throws IOException {
+        checkIndex(i);
+        switch (opcodes[i]) {
+            case PAINT_SQUARE:
+                CommandFormat.append(out, CommandFormat.PAINT_SQUARE, c[i], r[i], r2[i]);
+                break;
+            case PAINT_LINE:
+                CommandFormat.append(out, CommandFormat.PAINT_LINE, c[i], r[i], c2[i], r2[i]);
+                break;
+            default:
+                CommandFormat.append(out, CommandFormat.ERASE_CELL, c[i], r[i]);
+        }
+    }
+
+    public void writeTo(int i, ByteBuffer out) {
+        checkIndex(i);
+        switch (opcodes[i]) {
+            case PAINT_SQUARE:
+                CommandFormat.put(out, CommandFormat.PAINT_SQUARE_BYTES, c[i], r[i], r2[i]);
+                break;
+            case PAINT_LINE:
+                CommandFormat.put(out, CommandFormat.PAINT_LINE_BYTES, c[i], r[i], c2[i], r2[i]);
+                break;
+            default:
+                CommandFormat.put(out, CommandFormat.ERASE_CELL_BYTES, c[i], r[i]);
+        }
+    }
+
+    /**
+     * Writes the whole solution in the .out format: the number of commands and then one command per line.
+     */
+    public void writeTo(Appendable out) throws IOException {
+        CommandFormat.appendInt(out, size);
+        for (int i = 0; i < size; i++) {
+            out.append('\n');
+            writeTo(i, out);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ *
+ * Writes commands in the .out format ("PAINT_SQUARE 2 3 1") without creating any strings. The
+ * opcodes are constants and integers are formatted digit by digit, so writing a command to an
+ * <tt>Appendable</tt> or a <tt>ByteBuffer</tt> allocates nothing.
+ *
+ */
+class CommandFormat {
+
+    static final String PAINT_SQUARE = "PAINT_SQUARE";
+    static final String PAINT_LINE = "PAINT_LINE";
+    static final String ERASE_CELL = "ERASE_CELL";
+
+    static final byte[] PAINT_SQUARE_BYTES = PAINT_SQUARE.getBytes(StandardCharsets.US_ASCII);
+    static final byte[] PAINT_LINE_BYTES = PAINT_LINE.getBytes(StandardCharsets.US_ASCII);
+    static final byte[] ERASE_CELL_BYTES = ERASE_CELL.getBytes(StandardCharsets.US_ASCII);
+
+    // Longest int is "-2147483648"
+    static final int MAX_INT_LENGTH = 11;
+
+    /**
+     * Appends the opcode and the operands, separated by spaces.
+     */
+    static void append(Appendable out, String opcode, int a, int b) throws IOException {
+        out.append(opcode);
+        appendOperand(out, a);
+        appendOperand(out, b);
+    }
+
+    static void append(Appendable out, String opcode, int a, int b, int c) throws IOException {
+        append(out, opcode, a, b);
+        appendOperand(out, c);
+    }
+
+    static void append(Appendable out, String opcode, int a, int b, int c, int d) throws IOException {
+        append(out, opcode, a, b, c);
+        appendOperand(out, d);
+    }
+
+    private static void appendOperand(Appendable out, int value) throws IOException {
+        out.append(' ');
+        appendInt(out, value);
+    }
+
+    /**
+     * Appends the decimal digits of value, like {@code String.valueOf(value)} but without the string.
+     */
+    static void appendInt(Appendable out, int value) throws IOException {
+        if (value < 0) {
+            out.append('-');
+        }
+        // Work with the negative value, since -Integer.MIN_VALUE doesn't fit in an int
+        int negative = (value < 0) ? value : -value;
+        int divisor = -1;
+        while (divisor > -1000000000 && negative <= divisor * 10) {
+            divisor *= 10;
+        }
+        while (divisor != 0) {
+            out.append((char) ('0' + negative / divisor));
+            negative %= divisor;
+            divisor /= 10;
+        }
+    }
+
+    /**
+     * Puts the opcode and the operands, separated by spaces, as Ascii bytes.
+     *
+     * @throws java.nio.BufferOverflowException if the buffer doesn't have room for the command.
+     */
+    static void put(ByteBuffer out, byte[] opcode, int a, int b) {
+        out.put(opcode);
+        putOperand(out, a);
+        putOperand(out, b);
+    }
+
+    static void put(ByteBuffer out, byte[] opcode, int a, int b, int c) {
+        put(out, opcode, a, b);
+        putOperand(out, c);
+    }
+
+    static void put(ByteBuffer out, byte[] opcode, int a, int b, int c, int d) {
+        put(out, opcode, a, b, c);
+        putOperand(out, d);
+    }
+
+    private static void putOperand(ByteBuffer out, int value) {
+        out.put((byte) ' ');
+        putInt(out, value);
+    }
+
+    static void putInt(ByteBuffer out, int value) {
+        if (value < 0) {
+            out.put((byte) '-');
+        }
+        int negative = (value < 0) ? value : -value;
+        int divisor = -1;
+        while (divisor > -1000000000 && negative <= divisor * 10) {
+            divisor *= 10;
+        }
+        while (divisor != 0) {
+            out.put((byte) ('0' + negative / divisor));
+            negative %= divisor;
+            divisor /= 10;
+        }
+    }
+}
@@ -0,0 +1,298 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ *
+ * Solves a picture one connected component of target cells at a time. Paint commands only ever
+ * cover target cells, so no command can reach from one (4-connected) component into another, and
+ * the components can be solved independently.
+ *
+ * The components are found without looking at the empty cells one by one: the rows are scanned 64
+ * cells at a time for runs of target cells, the runs that touch a run in the row above are joined
+ * with union-find, and the runs are then grouped by component. Every component is copied into a
+ * small grid of the size of its bounding box (with only its own runs) and solved there with the
+ * greedy strategies of <tt>Painter</tt>, keeping the smaller solution. Single cells and single runs
+ * don't need a solver at all. Components are solved in parallel, in batches so that tiny
+ * components don't each become a task of their own.
+ *
+ * Usage: {@code java ComponentSolver <picture .in file>}
+ *
+ */
+public class ComponentSolver {
+
+    // Batches hold about this many runs
+    private static final int RUNS_PER_BATCH = 4096;
+
+    private static final long ALL_BITS = -1L;
+
+    // Runs of target cells in row order, and the union-find parent of each run
+    private int runCount;
+    private int[] runY = new int[0], runStart = new int[0], runEnd = new int[0];
+    private int[] parent = new int[0];
+
+    // Runs grouped by component: the runs of component c are componentRuns[componentStart[c]]
+    // until componentRuns[componentStart[c + 1]], in row order
+    private int componentCount;
+    private int[] componentStart = new int[0];
+    private int[] componentRuns = new int[0];
+
+    // One set of buffers per worker thread
+    private final ThreadLocal<ComponentWorker> workers = ThreadLocal.withInitial(ComponentWorker::new);
+
+    private static class ComponentWorker {
+        final PaintGrid grid = new PaintGrid(0, 0);
+        final SquareMap squareMap = new SquareMap();
+        final Painter squareLinePainter = new Painter();
+        final Painter linePainter = new Painter();
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: java ComponentSolver <picture .in file>");
+            System.exit(1);
+        }
+        PaintGrid picture = new PaintGrid(0, 0);
+        try {
+            PaintSolver.readPicture(args[0], picture);
+        } catch (IOException e) {
+            System.out.println("Could not read input file!");
+            System.exit(1);
+        }
+
+        long start = System.nanoTime();
+        ComponentSolver solver = new ComponentSolver();
+        CommandBuffer commands = solver.solve(picture);
+        long millis = (System.nanoTime() - start) / 1000000;
+
+        System.out.println(args[0] + ": " + solver.getComponentCount() + " components, " + commands.size() + " commands in " + millis + " ms");
+        PracticeProblem.writeData(args[0] + ".out", commands);
+    }
+
+    /**
+     * Returns the number of components of the last solved picture.
+     */
+    public int getComponentCount() {
+        return componentCount;
+    }
+
+    /**
+     * Solves the picture (which is not painted on) and returns the commands, component by component.
+     * A <tt>ComponentSolver</tt> must only solve one picture at a time.
+     */
+    public CommandBuffer solve(PaintGrid picture) {
+        findRuns(picture);
+        groupComponents();
+
+        // Batches of consecutive components
+        int[] batchStart = new int[componentCount + 1];
+        int batchCount = 0;
+        for (int c = 0; c < componentCount; ) {
+            batchStart[batchCount++] = c;
+            int runs = 0;
+            while (c < componentCount && runs < RUNS_PER_BATCH) {
+                runs += componentStart[c + 1] - componentStart[c];
+                c++;
+            }
+        }
+        batchStart[batchCount] = componentCount;
+
+        CommandBuffer[] batchCommands = new CommandBuffer[batchCount];
+        IntStream.range(0, batchCount).parallel().forEach(batch -> {
+            CommandBuffer commands = new CommandBuffer();
+            for (int c = batchStart[batch]; c < batchStart[batch + 1]; c++) {
+                solveComponent(c, commands);
+            }
+            batchCommands[batch] = commands;
+        });
+
+        CommandBuffer commands = new CommandBuffer();
+        for (CommandBuffer batch : batchCommands) {
+            commands.addAll(batch);
+        }
+        return commands;
+    }
+
+    //
+    // Labelling
+    //
+
+    private void findRuns(PaintGrid picture) {
+        runCount = 0;
+        int w = picture.getWidth();
+        int wordsPerRow = picture.getWordsPerRow();
+        int previousRowFirst = 0;
+        int previousRowEnd = 0;
+
+        for (int y = 0; y < picture.getHeight(); y++) {
+            int rowFirst = runCount;
+            int start = -1;
+            for (int word = 0; word < wordsPerRow; word++) {
+                long bits = picture.getTargetWord(y, word);
+                if (bits == 0 && start < 0) {
+                    continue;
+                }
+                int base = word << 6;
+                int position = 0;
+                while (position < 64) {
+                    if (start >= 0) {
+                        long zeros = ~bits & (ALL_BITS << position);
+                        if (zeros == 0) {
+                            break;
+                        }
+                        position = Long.numberOfTrailingZeros(zeros);
+                        addRun(y, start, base + position - 1);
+                        start = -1;
+                    } else {
+                        long ones = bits & (ALL_BITS << position);
+                        if (ones == 0) {
+                            break;
+                        }
+                        position = Long.numberOfTrailingZeros(ones);
+                        start = base + position;
+                    }
+                }
+            }
+            if (start >= 0) {
+                addRun(y, start, w - 1);
+            }
+
+            // Join with the runs of the row above that share a column
+            int i = previousRowFirst;
+            int j = rowFirst;
+            while (i < previousRowEnd && j < runCount) {
+                if (runStart[i] <= runEnd[j] && runStart[j] <= runEnd[i]) {
+                    union(i, j);
+                }
+                if (runEnd[i] < runEnd[j]) {
+                    i++;
+                } else {
+                    j++;
+                }
+            }
+            previousRowFirst = rowFirst;
+            previousRowEnd = runCount;
+        }
+    }
+
+    private void addRun(int y, int start, int end) {
+        if (runCount == runY.length) {
+            int capacity = Math.max(16, 2 * runCount);
+            runY = Arrays.copyOf(runY, capacity);
+            runStart = Arrays.copyOf(runStart, capacity);
+            runEnd = Arrays.copyOf(runEnd, capacity);
+            parent = Arrays.copyOf(parent, capacity);
+        }
+        runY[runCount] = y;
+        runStart[runCount] = start;
+        runEnd[runCount] = end;
+        parent[runCount] = runCount;
+        runCount++;
+    }
+
+    private int find(int run) {
+        while (parent[run] != run) {
+            parent[run] = parent[parent[run]];
+            run = parent[run];
+        }
+        return run;
+    }
+
+    private void union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        // The smaller index becomes the root, so components are numbered in the order they start
+        if (rootA < rootB) {
+            parent[rootB] = rootA;
+        } else if (rootB < rootA) {
+            parent[rootA] = rootB;
+        }
+    }
+
+    // Counting sort of the runs by component, keeping the row order inside each component
+    private void groupComponents() {
+        int[] componentOf = new int[runCount];
+        componentCount = 0;
+        for (int run = 0; run < runCount; run++) {
+            int root = find(run);
+            componentOf[run] = (root == run) ? componentCount++ : componentOf[root];
+        }
+
+        if (componentStart.length < componentCount + 1) {
+            componentStart = new int[componentCount + 1];
+        }
+        Arrays.fill(componentStart, 0, componentCount + 1, 0);
+        for (int run = 0; run < runCount; run++) {
+            componentStart[componentOf[run] + 1]++;
+        }
+        for (int c = 0; c < componentCount; c++) {
+            componentStart[c + 1] += componentStart[c];
+        }
+        if (componentRuns.length < runCount) {
+            componentRuns = new int[runCount];
+        }
+        int[] next = Arrays.copyOf(componentStart, componentCount);
+        for (int run = 0; run < runCount; run++) {
+            componentRuns[next[componentOf[run]]++] = run;
+        }
+    }
+
+    //
+    // Solving
+    //
+
+    private void solveComponent(int component, CommandBuffer commands) {
+        int first = componentStart[component];
+        int end = componentStart[component + 1];
+
+        if (end - first == 1) {
+            int run = componentRuns[first];
+            if (runStart[run] == runEnd[run]) {
+                commands.addPaintSquare(runStart[run], runY[run], 0);
+            } else {
+                commands.addPaintLine(runStart[run], runY[run], runEnd[run], runY[run]);
+            }
+            return;
+        }
+
+        int fromX = Integer.MAX_VALUE;
+        int toX = 0;
+        for (int i = first; i < end; i++) {
+            fromX = Math.min(fromX, runStart[componentRuns[i]]);
+            toX = Math.max(toX, runEnd[componentRuns[i]]);
+        }
+        int fromY = runY[componentRuns[first]];
+        int toY = runY[componentRuns[end - 1]];
+
+        ComponentWorker worker = workers.get();
+        worker.grid.reset(toX - fromX + 1, toY - fromY + 1);
+        for (int i = first; i < end; i++) {
+            int run = componentRuns[i];
+            worker.grid.setTargetRow(runY[run] - fromY, runStart[run] - fromX, runEnd[run] - fromX);
+        }
+
+        worker.squareLinePainter.load(worker.grid);
+        worker.squareMap.compute(worker.grid);
+        worker.squareLinePainter.fillSquareGroups(worker.squareMap);
+        worker.squareLinePainter.findAndFillLines();
+        worker.squareLinePainter.fillCells();
+
+        worker.linePainter.load(worker.grid);
+        worker.linePainter.findAndFillLines();
+        worker.linePainter.fillCells();
+
+        CommandBuffer solution = worker.squareLinePainter.getCommands();
+        if (worker.linePainter.getCommands().size() < solution.size()) {
+            solution = worker.linePainter.getCommands();
+        }
+        for (int i = 0; i < solution.size(); i++) {
+            int x = solution.getR(i) + fromX;
+            int y = solution.getC(i) + fromY;
+            if (solution.getOpcode(i) == CommandBuffer.PAINT_SQUARE) {
+                commands.addPaintSquare(x, y, solution.getS(i));
+            } else {
+                commands.addPaintLine(x, y, solution.getR2(i) + fromX, solution.getC2(i) + fromY);
+            }
+        }
+    }
+}
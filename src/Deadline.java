@@ -0,0 +1,65 @@
+/**
+ *
+ * A point in time that long running stages check now and then, so that they can stop early and
+ * still leave a valid (if larger) solution. {@link #NONE} never passes.
+ *
+ */
+public final class Deadline {
+
+    public static final Deadline NONE = new Deadline(0, false);
+
+    // About 146 years, so that the difference to System.nanoTime() never overflows
+    private static final long MAX_MILLIS = Long.MAX_VALUE / 2 / 1000000;
+
+    private final long nanos;
+    private final boolean bounded;
+
+    private Deadline(long nanos, boolean bounded) {
+        this.nanos = nanos;
+        this.bounded = bounded;
+    }
+
+    /**
+     * Returns a deadline that passes the given number of milliseconds from now, or {@link #NONE}
+     * if that is too far away to count in nanoseconds (such as Long.MAX_VALUE for no limit).
+     */
+    public static Deadline after(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException();
+        }
+        if (millis > MAX_MILLIS) {
+            return NONE;
+        }
+        return new Deadline(System.nanoTime() + millis * 1000000, true);
+    }
+
+    public boolean isBounded() {
+        return bounded;
+    }
+
+    public boolean isPassed() {
+        return bounded && System.nanoTime() - nanos >= 0;
+    }
+
+    /**
+     * Returns the nanoseconds left until the deadline passes (0 if it has), or Long.MAX_VALUE for
+     * {@link #NONE}.
+     */
+    public long remainingNanos() {
+        if (!bounded) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, nanos - System.nanoTime());
+    }
+
+    /**
+     * Returns the milliseconds left until the deadline passes (0 if it has), or Long.MAX_VALUE for
+     * {@link #NONE}.
+     */
+    public long remainingMillis() {
+        if (!bounded) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, (nanos - System.nanoTime()) / 1000000);
+    }
+}
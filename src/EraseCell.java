@@ -1,3 +1,6 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
 public class EraseCell implements Command {
     int r;
     int c;
@@ -13,8 +16,18 @@ public class EraseCell implements Command {
     }
 
     @Override
-    public void paint(PracticeProblem.State[][] wall) {
-        wall[c][r] = PracticeProblem.State.DONT_PAINT;
+    public void writeTo(Appendable out) throws IOException {
+        CommandFormat.append(out, CommandFormat.ERASE_CELL, c, r);
+    }
+
+    @Override
+    public void writeTo(ByteBuffer out) {
+        CommandFormat.put(out, CommandFormat.ERASE_CELL_BYTES, c, r);
+    }
+
+    @Override
+    public void paint(PaintGrid wall) {
+        wall.eraseCell(r, c);
     }
 
     @Override
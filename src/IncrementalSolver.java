@@ -0,0 +1,316 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ *
+ * Solves an edited picture by reusing the solution of the picture before the edit. Only the
+ * regions around the changed cells are solved again, so a small edit to a huge picture costs about
+ * as much as replaying the old solution.
+ *
+ * The picture is divided into blocks of 16 x 16 cells. A block is dirty if it lies within the
+ * margin of a changed cell. Every paint command of the old solution that doesn't touch a dirty
+ * block only paints cells that didn't change, so it's still a valid command and is kept. The kept
+ * commands are replayed, and the target cells they leave unpainted are grouped into regions of
+ * connected blocks. Every region (plus the margin) is solved with the greedy strategies of
+ * <tt>Painter</tt> on top of the paint that is already there, keeping the smaller solution.
+ * Cells painted by kept squares that must not be painted are erased at the end, as in the old
+ * solution.
+ *
+ * The old solution is verified against the old picture first. Pictures of different sizes have
+ * nothing in common, and an old solution that doesn't solve the old picture can't be trusted, so
+ * in both cases the picture is solved from scratch with <tt>ComponentSolver</tt>.
+ *
+ * Usage: {@code java IncrementalSolver <old .in file> <old solution> <new .in file>}
+ *
+ */
+public class IncrementalSolver {
+
+    public static final int DEFAULT_MARGIN = 8;
+
+    private static final int BLOCK_SHIFT = 4;
+    private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+
+    private final int margin;
+
+    private int blocksX, blocksY;
+    private boolean[] dirty = new boolean[0];
+    private boolean[] unpainted = new boolean[0];
+    private int[] stack = new int[0];
+
+    private int changedCells;
+    private int keptCommands;
+    private int regionCount;
+
+    private final PaintGrid region = new PaintGrid(0, 0);
+    private final SquareMap squareMap = new SquareMap();
+    private final Painter squareLinePainter = new Painter();
+    private final Painter linePainter = new Painter();
+
+    public IncrementalSolver() {
+        this(DEFAULT_MARGIN);
+    }
+
+    public IncrementalSolver(int margin) {
+        if (margin < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.margin = margin;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            System.out.println("Usage: java IncrementalSolver <old .in file> <old solution> <new .in file>");
+            System.exit(1);
+        }
+        PaintGrid previous = new PaintGrid(0, 0);
+        PaintGrid current = new PaintGrid(0, 0);
+        CommandBuffer previousCommands = new CommandBuffer();
+        try {
+            PaintSolver.readPicture(args[0], previous);
+            SolutionLoader.load(args[1], previousCommands);
+            PaintSolver.readPicture(args[2], current);
+        } catch (IOException e) {
+            System.out.println("Could not read input file! " + e.getMessage());
+            System.exit(1);
+        }
+
+        long start = System.nanoTime();
+        IncrementalSolver solver = new IncrementalSolver();
+        CommandBuffer commands = solver.solve(previous, previousCommands, current);
+        long millis = (System.nanoTime() - start) / 1000000;
+
+        System.out.println(args[2] + ": " + solver.getChangedCellCount() + " changed cells, "
+                + solver.getKeptCommandCount() + " of " + previousCommands.size() + " commands kept, "
+                + solver.getRegionCount() + " regions solved, " + commands.size() + " commands in " + millis + " ms");
+        PracticeProblem.writeData(args[2] + ".out", commands);
+    }
+
+    /**
+     * Returns the number of cells that changed in the last solve.
+     */
+    public int getChangedCellCount() {
+        return changedCells;
+    }
+
+    /**
+     * Returns the number of paint commands of the old solution that were kept in the last solve.
+     */
+    public int getKeptCommandCount() {
+        return keptCommands;
+    }
+
+    /**
+     * Returns the number of regions that were solved again in the last solve.
+     */
+    public int getRegionCount() {
+        return regionCount;
+    }
+
+    /**
+     * Solves the current picture, given the previous picture and its solution (none of them are
+     * changed, and the pictures are not painted on). If the sizes differ or the previous solution
+     * doesn't solve the previous picture, the current picture is solved from scratch. An
+     * <tt>IncrementalSolver</tt> must only solve one picture at a time.
+     */
+    public CommandBuffer solve(PaintGrid previous, CommandBuffer previousCommands, PaintGrid current) {
+        changedCells = 0;
+        keptCommands = 0;
+        regionCount = 0;
+        if (previous.getWidth() != current.getWidth() || previous.getHeight() != current.getHeight()
+                || !solves(previousCommands, previous)) {
+            return new ComponentSolver().solve(current);
+        }
+
+        int w = current.getWidth();
+        int h = current.getHeight();
+        blocksX = (w + BLOCK_SIZE - 1) >> BLOCK_SHIFT;
+        blocksY = (h + BLOCK_SIZE - 1) >> BLOCK_SHIFT;
+        if (dirty.length < blocksX * blocksY) {
+            dirty = new boolean[blocksX * blocksY];
+            unpainted = new boolean[blocksX * blocksY];
+            stack = new int[blocksX * blocksY];
+        }
+        Arrays.fill(dirty, 0, blocksX * blocksY, false);
+        Arrays.fill(unpainted, 0, blocksX * blocksY, false);
+
+        markDirtyBlocks(previous, current);
+        if (changedCells == 0) {
+            keptCommands = previousCommands.size();
+            return previousCommands.snapshot();
+        }
+
+        // Keep the paint commands that stay clear of the dirty blocks
+        CommandBuffer commands = new CommandBuffer(previousCommands.size());
+        for (int i = 0; i < previousCommands.size(); i++) {
+            byte opcode = previousCommands.getOpcode(i);
+            int x = previousCommands.getR(i);
+            int y = previousCommands.getC(i);
+            if (opcode == CommandBuffer.PAINT_SQUARE) {
+                int s = previousCommands.getS(i);
+                if (!touchesDirtyBlock(x - s, y - s, x + s, y + s)) {
+                    commands.addPaintSquare(x, y, s);
+                }
+            } else if (opcode == CommandBuffer.PAINT_LINE) {
+                int x2 = previousCommands.getR2(i);
+                int y2 = previousCommands.getC2(i);
+                if (!touchesDirtyBlock(Math.min(x, x2), Math.min(y, y2), Math.max(x, x2), Math.max(y, y2))) {
+                    commands.addPaintLine(x, y, x2, y2);
+                }
+            }
+        }
+        keptCommands = commands.size();
+
+        PaintGrid grid = current.copy();
+        grid.clearPainted();
+        commands.paint(grid);
+
+        // Erase the holes of kept squares first, so the regions are solved on a grid where only
+        // target cells are painted
+        CommandBuffer erases = new CommandBuffer();
+        int wordsPerRow = grid.getWordsPerRow();
+        for (int y = 0; y < h; y++) {
+            for (int word = 0; word < wordsPerRow; word++) {
+                long extra = grid.getPaintedWord(y, word) & ~grid.getTargetWord(y, word);
+                for (; extra != 0; extra &= extra - 1) {
+                    int x = (word << 6) + Long.numberOfTrailingZeros(extra);
+                    grid.eraseCell(x, y);
+                    erases.addEraseCell(x, y);
+                }
+                long left = grid.getTargetWord(y, word) & ~grid.getPaintedWord(y, word);
+                for (; left != 0; left &= left - 1) {
+                    int x = (word << 6) + Long.numberOfTrailingZeros(left);
+                    unpainted[(y >> BLOCK_SHIFT) * blocksX + (x >> BLOCK_SHIFT)] = true;
+                }
+            }
+        }
+
+        solveRegions(grid, commands);
+        commands.addAll(erases);
+        return commands;
+    }
+
+    // Replays the commands on a clean copy, since the picture may have been painted on before
+    private static boolean solves(CommandBuffer commands, PaintGrid picture) {
+        PaintGrid replay = picture.copy();
+        replay.clearPainted();
+        return SolutionVerifier.verify(replay, commands).isValid();
+    }
+
+    //
+    // Dirty blocks
+    //
+
+    private void markDirtyBlocks(PaintGrid previous, PaintGrid current) {
+        int wordsPerRow = current.getWordsPerRow();
+        for (int y = 0; y < current.getHeight(); y++) {
+            for (int word = 0; word < wordsPerRow; word++) {
+                long changed = previous.getTargetWord(y, word) ^ current.getTargetWord(y, word);
+                if (changed == 0) {
+                    continue;
+                }
+                changedCells += Long.bitCount(changed);
+                int fromX = (word << 6) + Long.numberOfTrailingZeros(changed);
+                int toX = (word << 6) + 63 - Long.numberOfLeadingZeros(changed);
+                markBlocks(fromX - margin, y - margin, toX + margin, y + margin);
+            }
+        }
+    }
+
+    private void markBlocks(int fromX, int fromY, int toX, int toY) {
+        int fromBlockX = Math.max(0, fromX >> BLOCK_SHIFT);
+        int fromBlockY = Math.max(0, fromY >> BLOCK_SHIFT);
+        int toBlockX = Math.min(blocksX - 1, toX >> BLOCK_SHIFT);
+        int toBlockY = Math.min(blocksY - 1, toY >> BLOCK_SHIFT);
+        for (int blockY = fromBlockY; blockY <= toBlockY; blockY++) {
+            Arrays.fill(dirty, blockY * blocksX + fromBlockX, blockY * blocksX + toBlockX + 1, true);
+        }
+    }
+
+    private boolean touchesDirtyBlock(int fromX, int fromY, int toX, int toY) {
+        for (int blockY = fromY >> BLOCK_SHIFT; blockY <= toY >> BLOCK_SHIFT; blockY++) {
+            for (int blockX = fromX >> BLOCK_SHIFT; blockX <= toX >> BLOCK_SHIFT; blockX++) {
+                if (dirty[blockY * blocksX + blockX]) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    //
+    // Regions
+    //
+
+    // Solves every group of 8-connected blocks with unpainted target cells, and paints the new
+    // commands onto the grid so that overlapping regions don't paint the same cells twice
+    private void solveRegions(PaintGrid grid, CommandBuffer commands) {
+        for (int block = 0; block < blocksX * blocksY; block++) {
+            if (!unpainted[block]) {
+                continue;
+            }
+
+            // Flood fill, collecting the bounding box in blocks
+            int fromBlockX = block % blocksX, toBlockX = fromBlockX;
+            int fromBlockY = block / blocksX, toBlockY = fromBlockY;
+            int stackSize = 0;
+            stack[stackSize++] = block;
+            unpainted[block] = false;
+            while (stackSize > 0) {
+                int b = stack[--stackSize];
+                int blockX = b % blocksX;
+                int blockY = b / blocksX;
+                fromBlockX = Math.min(fromBlockX, blockX);
+                toBlockX = Math.max(toBlockX, blockX);
+                fromBlockY = Math.min(fromBlockY, blockY);
+                toBlockY = Math.max(toBlockY, blockY);
+                for (int ny = Math.max(0, blockY - 1); ny <= Math.min(blocksY - 1, blockY + 1); ny++) {
+                    for (int nx = Math.max(0, blockX - 1); nx <= Math.min(blocksX - 1, blockX + 1); nx++) {
+                        if (unpainted[ny * blocksX + nx]) {
+                            unpainted[ny * blocksX + nx] = false;
+                            stack[stackSize++] = ny * blocksX + nx;
+                        }
+                    }
+                }
+            }
+
+            int fromX = Math.max(0, (fromBlockX << BLOCK_SHIFT) - margin);
+            int fromY = Math.max(0, (fromBlockY << BLOCK_SHIFT) - margin);
+            int toX = Math.min(grid.getWidth() - 1, ((toBlockX + 1) << BLOCK_SHIFT) - 1 + margin);
+            int toY = Math.min(grid.getHeight() - 1, ((toBlockY + 1) << BLOCK_SHIFT) - 1 + margin);
+            solveRegion(grid, commands, fromX, fromY, toX, toY);
+            regionCount++;
+        }
+    }
+
+    private void solveRegion(PaintGrid grid, CommandBuffer commands, int fromX, int fromY, int toX, int toY) {
+        region.copyRegionFrom(grid, fromX, fromY, toX - fromX + 1, toY - fromY + 1);
+
+        squareLinePainter.load(region);
+        squareMap.compute(region);
+        squareLinePainter.fillSquareGroups(squareMap);
+        squareLinePainter.findAndFillLines();
+        squareLinePainter.fillCells();
+
+        linePainter.load(region);
+        linePainter.findAndFillLines();
+        linePainter.fillCells();
+
+        CommandBuffer solution = squareLinePainter.getCommands();
+        if (linePainter.getCommands().size() < solution.size()) {
+            solution = linePainter.getCommands();
+        }
+        int first = commands.size();
+        for (int i = 0; i < solution.size(); i++) {
+            int x = solution.getR(i) + fromX;
+            int y = solution.getC(i) + fromY;
+            if (solution.getOpcode(i) == CommandBuffer.PAINT_SQUARE) {
+                commands.addPaintSquare(x, y, solution.getS(i));
+            } else {
+                commands.addPaintLine(x, y, solution.getR2(i) + fromX, solution.getC2(i) + fromY);
+            }
+        }
+        for (int i = first; i < commands.size(); i++) {
+            commands.paint(i, grid);
+        }
+    }
+}
@@ -0,0 +1,500 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ *
+ * Improves an existing solution by local search until a time budget runs out. Every paint command
+ * is a rectangle (a square or a one cell wide line), and each cell keeps a count of the commands
+ * covering it, so the effect of a move is known from the cells of the commands it touches and never
+ * needs a pass over the picture.
+ *
+ * The moves are:
+ *
+ *  - remove: drop a command whose target cells are all covered by other commands as well,
+ *  - replace: add the largest square or the longest line through a cell of a random command, and
+ *    then remove every command that the new one made redundant. Two lines next to each other are
+ *    merged by this move, and so are a group of small squares inside a larger one.
+ *
+ * Moves that make the solution smaller or keep its size are always taken, and moves that make it
+ * bigger are taken with a probability that drops as the budget runs out (simulated annealing).
+ * Every state is a valid solution, and the best one seen is what's returned.
+ *
+ * EraseCell commands of the input are kept, and are dropped if no command paints their cell
+ * anymore. A <tt>LocalSearchOptimizer</tt> must only be used by one thread at a time.
+ *
+ */
+public class LocalSearchOptimizer {
+
+    private static final int TILE_SHIFT = 4;
+    private static final double START_TEMPERATURE = 0.3;
+    private static final double END_TEMPERATURE = 0.05;
+    private static final double REMOVE_PROBABILITY = 0.2;
+
+    // Keep single moves cheap on huge pictures
+    private static final int MAX_PROPOSED_SIZE = 1024;
+
+    // About 146 years, so that the budget in nanoseconds doesn't overflow
+    private static final long MAX_BUDGET_MILLIS = Long.MAX_VALUE / 2 / 1000000;
+
+    private final Random random;
+
+    private int w, h;
+    private PaintGrid picture;
+
+    // Number of commands covering each cell, index y * w + x
+    private char[] coverage;
+
+    // Cells erased by the solution (never target cells), and how many of them are painted, which
+    // is the number of erase commands that are needed
+    private long[] erased;
+    private int paintedErasedCount;
+
+    // All commands ever added, as rectangles. Commands are never moved, only marked dead.
+    private int commandCount;
+    private int[] x0 = new int[0], y0 = new int[0], x1 = new int[0], y1 = new int[0];
+    private boolean[] alive = new boolean[0];
+
+    // Ids of the live commands, and the position of each live command in it
+    private int[] aliveIds = new int[0];
+    private int[] alivePosition = new int[0];
+    private int aliveCount;
+
+    // Ids of the commands touching each tile of 16 x 16 cells (including some dead ones)
+    private int tilesPerRow;
+    private int[][] tiles;
+    private int[] tileSizes;
+
+    // Scratch for one move
+    private int[] stamp = new int[0];
+    private int currentStamp;
+    private int[] removed = new int[16];
+    private int removedCount;
+
+    private CommandBuffer best;
+    private boolean bestIsCurrent;
+
+    private long iterations;
+
+    public LocalSearchOptimizer(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Returns the number of moves tried by the last {@code optimize} call.
+     */
+    public long getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Searches for a smaller solution for the picture for budgetMillis milliseconds. The picture is
+     * only read (its target cells), and the solution must be valid for it. Budgets too large to
+     * count in nanoseconds are cut down to about 146 years.
+     *
+     * @return the smallest solution found, which is never larger than the given one.
+     * @throws IllegalArgumentException if the budget is negative or the solution isn't a valid
+     *         solution for the picture.
+     */
+    public CommandBuffer optimize(PaintGrid picture, CommandBuffer solution, long budgetMillis) {
+        if (budgetMillis < 0) {
+            throw new IllegalArgumentException();
+        }
+        load(picture, solution);
+
+        long start = System.nanoTime();
+        long budgetNanos = Math.min(budgetMillis, MAX_BUDGET_MILLIS) * 1000000;
+        double temperature = START_TEMPERATURE;
+
+        best = build(new CommandBuffer(solution.size()));
+        bestIsCurrent = true;
+        int bestScore = score();
+
+        iterations = 0;
+        while (aliveCount > 0) {
+            if ((iterations & 63) == 0) {
+                long elapsed = System.nanoTime() - start;
+                if (elapsed >= budgetNanos) {
+                    break;
+                }
+                double progress = (double) elapsed / budgetNanos;
+                temperature = START_TEMPERATURE + (END_TEMPERATURE - START_TEMPERATURE) * progress;
+            }
+            iterations++;
+
+            if (random.nextDouble() < REMOVE_PROBABILITY) {
+                int id = aliveIds[random.nextInt(aliveCount)];
+                if (isRedundant(id)) {
+                    removeCommand(id);
+                }
+            } else {
+                tryReplace(temperature);
+            }
+
+            int score = score();
+            if (score < bestScore) {
+                bestScore = score;
+                bestIsCurrent = true;
+            }
+
+            if (commandCount > 2 * aliveCount + 4096) {
+                compact();
+            }
+        }
+
+        CommandBuffer result = bestIsCurrent ? build(best) : best;
+        best = null;
+        this.picture = null;
+        return result;
+    }
+
+    // The number of commands of the current solution
+    private int score() {
+        return aliveCount + paintedErasedCount;
+    }
+
+    //
+    // Moves
+    //
+
+    private void tryReplace(double temperature) {
+        // A target cell, found through a random command so that it's cheap on sparse pictures
+        int seed = aliveIds[random.nextInt(aliveCount)];
+        int x = x0[seed] + random.nextInt(x1[seed] - x0[seed] + 1);
+        int y = y0[seed] + random.nextInt(y1[seed] - y0[seed] + 1);
+        if (!picture.isTarget(x, y)) {
+            return;
+        }
+
+        int fromX, fromY, toX, toY;
+        switch (random.nextInt(3)) {
+            case 0: {
+                int s = largestSquare(x, y);
+                fromX = x - s;
+                fromY = y - s;
+                toX = x + s;
+                toY = y + s;
+                break;
+            }
+            case 1:
+                fromY = toY = y;
+                fromX = x;
+                while (fromX > 0 && x - fromX < MAX_PROPOSED_SIZE && picture.isTarget(fromX - 1, y)) fromX--;
+                toX = x;
+                while (toX < w - 1 && toX - x < MAX_PROPOSED_SIZE && picture.isTarget(toX + 1, y)) toX++;
+                break;
+            default:
+                fromX = toX = x;
+                fromY = y;
+                while (fromY > 0 && y - fromY < MAX_PROPOSED_SIZE && picture.isTarget(x, fromY - 1)) fromY--;
+                toY = y;
+                while (toY < h - 1 && toY - y < MAX_PROPOSED_SIZE && picture.isTarget(x, toY + 1)) toY++;
+                break;
+        }
+        if (!canCover(fromX, fromY, toX, toY)) {
+            return;
+        }
+
+        int scoreBefore = score();
+        int added = addCommand(fromX, fromY, toX, toY);
+        removeRedundantAround(added);
+
+        int delta = score() - scoreBefore;
+        if (delta <= 0) {
+            return;
+        }
+        boolean accept = random.nextDouble() < Math.exp(-delta / temperature);
+
+        // Undo, and if the worse solution is taken anyway, keep a copy of the best one first
+        for (int i = 0; i < removedCount; i++) {
+            reviveCommand(removed[i]);
+        }
+        removeCommand(added);
+        if (!accept) {
+            discardLastCommand();
+            return;
+        }
+        if (bestIsCurrent) {
+            build(best);
+            bestIsCurrent = false;
+        }
+        reviveCommand(added);
+        for (int i = 0; i < removedCount; i++) {
+            removeCommand(removed[i]);
+        }
+    }
+
+    // The largest s such that the square of side 2s+1 around (x, y) is all target cells
+    private int largestSquare(int x, int y) {
+        int s = 0;
+        while (s < MAX_PROPOSED_SIZE) {
+            int t = s + 1;
+            if (x - t < 0 || y - t < 0 || x + t >= w || y + t >= h) {
+                break;
+            }
+            boolean ring = true;
+            for (int i = -t; i <= t && ring; i++) {
+                ring = picture.isTarget(x + i, y - t) && picture.isTarget(x + i, y + t) &&
+                        picture.isTarget(x - t, y + i) && picture.isTarget(x + t, y + i);
+            }
+            if (!ring) {
+                break;
+            }
+            s = t;
+        }
+        return s;
+    }
+
+    // A new command may only paint target cells, and coverage counts mustn't overflow
+    private boolean canCover(int fromX, int fromY, int toX, int toY) {
+        for (int y = fromY; y <= toY; y++) {
+            for (int x = fromX; x <= toX; x++) {
+                if (coverage[y * w + x] == Character.MAX_VALUE) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean isRedundant(int id) {
+        for (int y = y0[id]; y <= y1[id]; y++) {
+            for (int x = x0[id]; x <= x1[id]; x++) {
+                if (coverage[y * w + x] == 1 && picture.isTarget(x, y)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // Removes the live commands that overlap the command and aren't needed anymore
+    private void removeRedundantAround(int id) {
+        removedCount = 0;
+        currentStamp++;
+        if (currentStamp == 0) {
+            Arrays.fill(stamp, 0);
+            currentStamp = 1;
+        }
+        stamp[id] = currentStamp;
+
+        for (int ty = y0[id] >> TILE_SHIFT; ty <= y1[id] >> TILE_SHIFT; ty++) {
+            for (int tx = x0[id] >> TILE_SHIFT; tx <= x1[id] >> TILE_SHIFT; tx++) {
+                int tile = ty * tilesPerRow + tx;
+                for (int i = 0; i < tileSizes[tile]; i++) {
+                    int other = tiles[tile][i];
+                    if (stamp[other] == currentStamp || !alive[other]) {
+                        continue;
+                    }
+                    stamp[other] = currentStamp;
+                    if (overlaps(id, other) && isRedundant(other)) {
+                        removeCommand(other);
+                        if (removedCount == removed.length) {
+                            removed = Arrays.copyOf(removed, 2 * removedCount);
+                        }
+                        removed[removedCount++] = other;
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean overlaps(int a, int b) {
+        return x0[a] <= x1[b] && x0[b] <= x1[a] && y0[a] <= y1[b] && y0[b] <= y1[a];
+    }
+
+    //
+    // State
+    //
+
+    private void load(PaintGrid picture, CommandBuffer solution) {
+        this.picture = picture;
+        this.w = picture.getWidth();
+        this.h = picture.getHeight();
+
+        coverage = new char[w * h];
+        erased = new long[(w * h + 63) >>> 6];
+        paintedErasedCount = 0;
+        commandCount = 0;
+        aliveCount = 0;
+
+        tilesPerRow = (w + (1 << TILE_SHIFT) - 1) >> TILE_SHIFT;
+        int tileCount = tilesPerRow * ((h + (1 << TILE_SHIFT) - 1) >> TILE_SHIFT);
+        tiles = new int[tileCount][];
+        tileSizes = new int[tileCount];
+
+        for (int i = 0; i < solution.size(); i++) {
+            int x = solution.getR(i);
+            int y = solution.getC(i);
+            switch (solution.getOpcode(i)) {
+                case CommandBuffer.PAINT_SQUARE: {
+                    int s = solution.getS(i);
+                    addCommand(x - s, y - s, x + s, y + s);
+                    break;
+                }
+                case CommandBuffer.PAINT_LINE:
+                    addCommand(Math.min(x, solution.getR2(i)), Math.min(y, solution.getC2(i)),
+                            Math.max(x, solution.getR2(i)), Math.max(y, solution.getC2(i)));
+                    break;
+                default:
+                    if (picture.isTarget(x, y)) {
+                        throw new IllegalArgumentException("Erased target cell " + x + ", " + y);
+                    }
+                    int cell = y * w + x;
+                    if ((erased[cell >>> 6] & (1L << cell)) == 0) {
+                        erased[cell >>> 6] |= 1L << cell;
+                        if (coverage[cell] > 0) {
+                            paintedErasedCount++;
+                        }
+                    }
+            }
+        }
+
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                int cell = y * w + x;
+                boolean painted = coverage[cell] > 0;
+                if (picture.isTarget(x, y) ? !painted : painted && !isErased(cell)) {
+                    throw new IllegalArgumentException("Not a valid solution at " + x + ", " + y);
+                }
+            }
+        }
+    }
+
+    private boolean isErased(int cell) {
+        return (erased[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    private int addCommand(int fromX, int fromY, int toX, int toY) {
+        if (commandCount == x0.length) {
+            int capacity = Math.max(16, 2 * commandCount);
+            x0 = Arrays.copyOf(x0, capacity);
+            y0 = Arrays.copyOf(y0, capacity);
+            x1 = Arrays.copyOf(x1, capacity);
+            y1 = Arrays.copyOf(y1, capacity);
+            alive = Arrays.copyOf(alive, capacity);
+            alivePosition = Arrays.copyOf(alivePosition, capacity);
+            aliveIds = Arrays.copyOf(aliveIds, capacity);
+            stamp = Arrays.copyOf(stamp, capacity);
+        }
+        int id = commandCount++;
+        x0[id] = fromX;
+        y0[id] = fromY;
+        x1[id] = toX;
+        y1[id] = toY;
+
+        for (int ty = fromY >> TILE_SHIFT; ty <= toY >> TILE_SHIFT; ty++) {
+            for (int tx = fromX >> TILE_SHIFT; tx <= toX >> TILE_SHIFT; tx++) {
+                int tile = ty * tilesPerRow + tx;
+                if (tiles[tile] == null) {
+                    tiles[tile] = new int[4];
+                } else if (tileSizes[tile] == tiles[tile].length) {
+                    tiles[tile] = Arrays.copyOf(tiles[tile], 2 * tileSizes[tile]);
+                }
+                tiles[tile][tileSizes[tile]++] = id;
+            }
+        }
+
+        reviveCommand(id);
+        return id;
+    }
+
+    // Makes a dead (or new) command live again and paints its cells
+    private void reviveCommand(int id) {
+        alive[id] = true;
+        alivePosition[id] = aliveCount;
+        aliveIds[aliveCount++] = id;
+        for (int y = y0[id]; y <= y1[id]; y++) {
+            for (int x = x0[id]; x <= x1[id]; x++) {
+                int cell = y * w + x;
+                if (coverage[cell]++ == 0 && isErased(cell)) {
+                    paintedErasedCount++;
+                }
+            }
+        }
+    }
+
+    private void removeCommand(int id) {
+        alive[id] = false;
+        int position = alivePosition[id];
+        int last = aliveIds[--aliveCount];
+        aliveIds[position] = last;
+        alivePosition[last] = position;
+        for (int y = y0[id]; y <= y1[id]; y++) {
+            for (int x = x0[id]; x <= x1[id]; x++) {
+                int cell = y * w + x;
+                if (--coverage[cell] == 0 && isErased(cell)) {
+                    paintedErasedCount--;
+                }
+            }
+        }
+    }
+
+    // Forgets the last added command, which must be dead. It's the last entry in all its tiles.
+    private void discardLastCommand() {
+        int id = --commandCount;
+        for (int ty = y0[id] >> TILE_SHIFT; ty <= y1[id] >> TILE_SHIFT; ty++) {
+            for (int tx = x0[id] >> TILE_SHIFT; tx <= x1[id] >> TILE_SHIFT; tx++) {
+                tileSizes[ty * tilesPerRow + tx]--;
+            }
+        }
+    }
+
+    // Forgets the dead commands and rebuilds the tile lists
+    private void compact() {
+        int count = 0;
+        for (int id = 0; id < commandCount; id++) {
+            if (alive[id]) {
+                x0[count] = x0[id];
+                y0[count] = y0[id];
+                x1[count] = x1[id];
+                y1[count] = y1[id];
+                alive[count] = true;
+                aliveIds[count] = count;
+                alivePosition[count] = count;
+                count++;
+            }
+        }
+        commandCount = count;
+        aliveCount = count;
+        Arrays.fill(alive, count, alive.length, false);
+
+        Arrays.fill(tileSizes, 0);
+        for (int id = 0; id < commandCount; id++) {
+            for (int ty = y0[id] >> TILE_SHIFT; ty <= y1[id] >> TILE_SHIFT; ty++) {
+                for (int tx = x0[id] >> TILE_SHIFT; tx <= x1[id] >> TILE_SHIFT; tx++) {
+                    int tile = ty * tilesPerRow + tx;
+                    if (tileSizes[tile] == tiles[tile].length) {
+                        tiles[tile] = Arrays.copyOf(tiles[tile], 2 * tileSizes[tile]);
+                    }
+                    tiles[tile][tileSizes[tile]++] = id;
+                }
+            }
+        }
+    }
+
+    // Writes the current solution into the buffer: the paint commands, then the needed erases
+    private CommandBuffer build(CommandBuffer commands) {
+        commands.clear();
+        for (int id = 0; id < commandCount; id++) {
+            if (!alive[id]) {
+                continue;
+            }
+            int width = x1[id] - x0[id];
+            int height = y1[id] - y0[id];
+            if (width == height && width % 2 == 0) {
+                commands.addPaintSquare(x0[id] + width / 2, y0[id] + height / 2, width / 2);
+            } else {
+                commands.addPaintLine(x0[id], y0[id], x1[id], y1[id]);
+            }
+        }
+        for (int word = 0; word < erased.length; word++) {
+            for (long bits = erased[word]; bits != 0; bits &= bits - 1) {
+                int cell = (word << 6) + Long.numberOfTrailingZeros(bits);
+                if (coverage[cell] > 0) {
+                    commands.addEraseCell(cell % w, cell / w);
+                }
+            }
+        }
+        return commands;
+    }
+}
@@ -0,0 +1,325 @@
+import java.util.Arrays;
+
+/**
+ *
+ * A packed paint grid with two bits per cell. The <i>target</i> plane holds the cells that should
+ * be painted (the '#' cells of the input) and the <i>painted</i> plane holds the cells that commands
+ * have painted so far. Each plane is stored as rows of 64-bit words, and every row starts on a new
+ * word so that row operations never straddle two rows.
+ *
+ */
+public class PaintGrid {
+
+    private static final int WORD_BITS = 64;
+    private static final int WORD_SHIFT = 6;
+    private static final long ALL_BITS = -1L;
+
+    private int w, h;
+    private int wordsPerRow;
+    private long[] target;
+    private long[] painted;
+
+    // Optional index of DO_PAINT runs that is updated on every paint
+    private RunIndex runIndex;
+
+    public PaintGrid(int w, int h) {
+        this.target = new long[0];
+        this.painted = new long[0];
+        reset(w, h);
+    }
+
+    private PaintGrid(PaintGrid other) {
+        this.w = other.w;
+        this.h = other.h;
+        this.wordsPerRow = other.wordsPerRow;
+        this.target = Arrays.copyOf(other.target, wordsPerRow * h);
+        this.painted = Arrays.copyOf(other.painted, wordsPerRow * h);
+    }
+
+    public int getWidth() {
+        return w;
+    }
+
+    public int getHeight() {
+        return h;
+    }
+
+    /**
+     * Resizes the grid to w x h and clears both planes. The word arrays are only reallocated if they
+     * are too small for the new size, so a grid can be reused for many pictures.
+     */
+    public void reset(int w, int h) {
+        if (w < 0 || h < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.w = w;
+        this.h = h;
+        this.wordsPerRow = (w + WORD_BITS - 1) >>> WORD_SHIFT;
+
+        int words = wordsPerRow * h;
+        if (target.length < words) {
+            target = new long[words];
+            painted = new long[words];
+        } else {
+            Arrays.fill(target, 0, words, 0L);
+            Arrays.fill(painted, 0, words, 0L);
+        }
+        runIndex = null;
+    }
+
+    //
+    // Single cell access
+    //
+
+    private int wordIndex(int x, int y) {
+        return y * wordsPerRow + (x >>> WORD_SHIFT);
+    }
+
+    public PracticeProblem.State get(int x, int y) {
+        if (isPainted(x, y)) {
+            return PracticeProblem.State.PAINTED;
+        }
+        return isTarget(x, y) ? PracticeProblem.State.DO_PAINT : PracticeProblem.State.DONT_PAINT;
+    }
+
+    public boolean isTarget(int x, int y) {
+        return (target[wordIndex(x, y)] & (1L << x)) != 0;
+    }
+
+    public boolean isPainted(int x, int y) {
+        return (painted[wordIndex(x, y)] & (1L << x)) != 0;
+    }
+
+    // A cell that still has to be painted
+    public boolean isDoPaint(int x, int y) {
+        int i = wordIndex(x, y);
+        return (target[i] & ~painted[i] & (1L << x)) != 0;
+    }
+
+    // A cell that must never be painted
+    public boolean isDontPaint(int x, int y) {
+        int i = wordIndex(x, y);
+        return ((target[i] | painted[i]) & (1L << x)) == 0;
+    }
+
+    public void setTarget(int x, int y, boolean value) {
+        int i = wordIndex(x, y);
+        if (value) {
+            target[i] |= 1L << x;
+        } else {
+            target[i] &= ~(1L << x);
+        }
+    }
+
+    /**
+     * Sets 64 target cells at once: bit i of bits is the cell (64*word + i, y). Bits beyond the
+     * width of the grid must be 0. Rows never share words, so different rows can be set from
+     * different threads.
+     */
+    public void setTargetWord(int y, int word, long bits) {
+        target[y * wordsPerRow + word] = bits;
+    }
+
+    /**
+     * Returns the number of DO_PAINT cells from fromX to toX (inclusive) in row y, counted 64 cells
+     * at a time.
+     */
+    public int countDoPaint(int y, int fromX, int toX) {
+        int rowStart = y * wordsPerRow;
+        int firstWord = fromX >>> WORD_SHIFT;
+        int lastWord = toX >>> WORD_SHIFT;
+        long firstMask = ALL_BITS << fromX;
+        long lastMask = ALL_BITS >>> (WORD_BITS - 1 - (toX & (WORD_BITS - 1)));
+
+        if (firstWord == lastWord) {
+            int i = rowStart + firstWord;
+            return Long.bitCount(target[i] & ~painted[i] & firstMask & lastMask);
+        }
+        int count = Long.bitCount(target[rowStart + firstWord] & ~painted[rowStart + firstWord] & firstMask);
+        for (int i = rowStart + firstWord + 1; i < rowStart + lastWord; i++) {
+            count += Long.bitCount(target[i] & ~painted[i]);
+        }
+        return count + Long.bitCount(target[rowStart + lastWord] & ~painted[rowStart + lastWord] & lastMask);
+    }
+
+    public int getWordsPerRow() {
+        return wordsPerRow;
+    }
+
+    /**
+     * Returns 64 target cells at once, see {@code setTargetWord}.
+     */
+    public long getTargetWord(int y, int word) {
+        return target[y * wordsPerRow + word];
+    }
+
+    /**
+     * Returns 64 painted cells at once: bit i is the cell (64*word + i, y).
+     */
+    public long getPaintedWord(int y, int word) {
+        return painted[y * wordsPerRow + word];
+    }
+
+    /**
+     * Makes the cells from fromX to toX (inclusive) in row y target cells.
+     */
+    public void setTargetRow(int y, int fromX, int toX) {
+        int rowStart = y * wordsPerRow;
+        int firstWord = fromX >>> WORD_SHIFT;
+        int lastWord = toX >>> WORD_SHIFT;
+        long firstMask = ALL_BITS << fromX;
+        long lastMask = ALL_BITS >>> (WORD_BITS - 1 - (toX & (WORD_BITS - 1)));
+
+        if (firstWord == lastWord) {
+            target[rowStart + firstWord] |= firstMask & lastMask;
+            return;
+        }
+        target[rowStart + firstWord] |= firstMask;
+        for (int i = firstWord + 1; i < lastWord; i++) {
+            target[rowStart + i] = ALL_BITS;
+        }
+        target[rowStart + lastWord] |= lastMask;
+    }
+
+    public void paintCell(int x, int y) {
+        painted[wordIndex(x, y)] |= 1L << x;
+        if (runIndex != null) {
+            runIndex.paintRect(x, y, x, y);
+        }
+    }
+
+    public void eraseCell(int x, int y) {
+        painted[wordIndex(x, y)] &= ~(1L << x);
+        if (runIndex != null && isTarget(x, y)) {
+            runIndex.eraseTargetCell(x, y);
+        }
+    }
+
+    //
+    // Range painting, whole words at a time
+    //
+
+    /**
+     * Paints the cells fromX..toX (inclusive) on row y.
+     */
+    public void paintRow(int y, int fromX, int toX) {
+        paintRowWords(y, fromX, toX);
+        if (runIndex != null) {
+            runIndex.paintRow(y, fromX, toX);
+        }
+    }
+
+    private void paintRowWords(int y, int fromX, int toX) {
+        int rowStart = y * wordsPerRow;
+        int firstWord = fromX >>> WORD_SHIFT;
+        int lastWord = toX >>> WORD_SHIFT;
+        long firstMask = ALL_BITS << fromX;
+        long lastMask = ALL_BITS >>> (WORD_BITS - 1 - (toX & (WORD_BITS - 1)));
+
+        if (firstWord == lastWord) {
+            painted[rowStart + firstWord] |= firstMask & lastMask;
+            return;
+        }
+        painted[rowStart + firstWord] |= firstMask;
+        for (int i = firstWord + 1; i < lastWord; i++) {
+            painted[rowStart + i] = ALL_BITS;
+        }
+        painted[rowStart + lastWord] |= lastMask;
+    }
+
+    /**
+     * Paints the cells fromY..toY (inclusive) in column x.
+     */
+    public void paintColumn(int x, int fromY, int toY) {
+        long bit = 1L << x;
+        for (int i = wordIndex(x, fromY), end = wordIndex(x, toY); i <= end; i += wordsPerRow) {
+            painted[i] |= bit;
+        }
+        if (runIndex != null) {
+            runIndex.paintColumn(x, fromY, toY);
+        }
+    }
+
+    /**
+     * Paints the rectangle spanned by the two (inclusive) corners.
+     */
+    public void paintRect(int fromX, int fromY, int toX, int toY) {
+        for (int y = fromY; y <= toY; y++) {
+            paintRowWords(y, fromX, toX);
+        }
+        if (runIndex != null) {
+            runIndex.paintRect(fromX, fromY, toX, toY);
+        }
+    }
+
+    /**
+     * Attaches a run index that from now on is kept up to date with everything painted on this
+     * grid. The index must have been built from this grid. Pass null to detach it.
+     */
+    public void setRunIndex(RunIndex runIndex) {
+        this.runIndex = runIndex;
+    }
+
+    public RunIndex getRunIndex() {
+        return runIndex;
+    }
+
+    /**
+     * Removes all paint, leaving only the target plane. An attached run index is detached, since
+     * it no longer matches the grid.
+     */
+    public void clearPainted() {
+        Arrays.fill(painted, 0, wordsPerRow * h, 0L);
+        runIndex = null;
+    }
+
+    /**
+     * Makes this grid a copy of the other grid (both planes), reusing the word arrays if they are
+     * large enough. An attached run index is detached.
+     */
+    public void copyFrom(PaintGrid other) {
+        reset(other.w, other.h);
+        int words = wordsPerRow * h;
+        System.arraycopy(other.target, 0, target, 0, words);
+        System.arraycopy(other.painted, 0, painted, 0, words);
+    }
+
+    /**
+     * Makes this grid a w x h copy (both planes) of the region of the other grid that starts at
+     * (fromX, fromY). The region must lie inside the other grid.
+     */
+    public void copyRegionFrom(PaintGrid other, int fromX, int fromY, int w, int h) {
+        if (fromX < 0 || fromY < 0 || fromX + w > other.w || fromY + h > other.h) {
+            throw new IllegalArgumentException();
+        }
+        reset(w, h);
+        copyRegion(other.target, target, other.wordsPerRow, fromX, fromY);
+        copyRegion(other.painted, painted, other.wordsPerRow, fromX, fromY);
+    }
+
+    private void copyRegion(long[] source, long[] destination, int sourceWordsPerRow, int fromX, int fromY) {
+        int shift = fromX & (WORD_BITS - 1);
+        for (int y = 0; y < h; y++) {
+            int sourceRow = (fromY + y) * sourceWordsPerRow + (fromX >>> WORD_SHIFT);
+            int sourceEnd = (fromY + y + 1) * sourceWordsPerRow;
+            for (int word = 0; word < wordsPerRow; word++) {
+                int i = sourceRow + word;
+                long bits = source[i] >>> shift;
+                if (shift != 0 && i + 1 < sourceEnd) {
+                    bits |= source[i + 1] << (WORD_BITS - shift);
+                }
+                if (word == wordsPerRow - 1 && (w & (WORD_BITS - 1)) != 0) {
+                    bits &= ALL_BITS >>> (WORD_BITS - (w & (WORD_BITS - 1)));
+                }
+                destination[y * wordsPerRow + word] = bits;
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of both planes. An attached run index is not copied.
+     */
+    public PaintGrid copy() {
+        return new PaintGrid(this);
+    }
+}
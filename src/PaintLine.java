@@ -1,3 +1,6 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
 public class PaintLine implements Command {
     int r1;
     int c1;
@@ -18,15 +21,21 @@ public class PaintLine implements Command {
     }
 
     @Override
-    public void paint(PracticeProblem.State[][] wall) {
+    public void writeTo(Appendable out) throws IOException {
+        CommandFormat.append(out, CommandFormat.PAINT_LINE, c1, r1, c2, r2);
+    }
+
+    @Override
+    public void writeTo(ByteBuffer out) {
+        CommandFormat.put(out, CommandFormat.PAINT_LINE_BYTES, c1, r1, c2, r2);
+    }
+
+    @Override
+    public void paint(PaintGrid wall) {
         if (r1 == r2) { //vertical
-            for (int y = c1; y <= c2; y++) {
-                wall[y][r1] = PracticeProblem.State.PAINTED;
-            }
+            wall.paintColumn(r1, c1, c2);
         } else {
-            for (int x = r1; x <= r2; x++) {
-                wall[c1][x] = PracticeProblem.State.PAINTED;
-            }
+            wall.paintRow(c1, r1, r2);
         }
     }
 
@@ -53,22 +62,22 @@ public class PaintLine implements Command {
         return 1;
     }
 
-    public int emptySpots(PracticeProblem.State[][] picture) {
+    public int emptySpots(PaintGrid picture) {
 
         int spots = 0;
 
         // Check if still possible
         if (this.isVertical()) {
             int x = this.getX();
-            for (int y = this.getY(); y < Math.sqrt(this.getLengthSquared()); y++) {
-                if (picture[y][x] != PracticeProblem.State.DO_PAINT) {
+            for (int y = c1; y <= c2; y++) {
+                if (!picture.isDoPaint(x, y)) {
                     spots++;
                 }
             }
         } else {
             int y = this.getY();
-            for (int x = this.getX(); x < Math.sqrt(this.getLengthSquared()); x++) {
-                if (picture[y][x] != PracticeProblem.State.DO_PAINT) {
+            for (int x = r1; x <= r2; x++) {
+                if (!picture.isDoPaint(x, y)) {
                     spots++;
                 }
             }
@@ -0,0 +1,244 @@
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ *
+ * A reusable solver for the painting problem. A <tt>PaintSolver</tt> owns its grid, its two
+ * <tt>Painter</tt>s and the square map, and reuses them for the next {@code solve} call if they are
+ * large enough, so solving many pictures in a row doesn't reallocate the big buffers for every
+ * picture.
+ *
+ * The square + line strategy and the line-only strategy are independent, so each runs on its own
+ * copy of the picture and both are run at the same time on the solver's executor, and the smaller
+ * solution is kept. The set cover engine (<tt>SetCoverSolver</tt>) can be turned on as a third
+ * strategy, and its solution is used instead if it's smaller still. If an optimization budget is
+ * set, the chosen solution is then improved by a <tt>LocalSearchOptimizer</tt> for that long.
+ *
+ * With a <tt>SolutionCache</tt> set, a picture that was solved before with the same settings is
+ * taken from the cache instead of being solved again.
+ *
+ * Different instances share no state and can be used at the same time, but a single instance
+ * must only be used by one thread at a time.
+ *
+ */
+public class PaintSolver {
+
+    // Bumped whenever the same settings give different solutions, so old cache entries aren't used
+    private static final int SOLVER_VERSION = 2;
+
+    private final Executor executor;
+
+    private final PaintGrid picture = new PaintGrid(0, 0);
+    private final SquareMap squareMap = new SquareMap();
+
+    // One painter per strategy
+    private final Painter squareLinePainter = new Painter();
+    private final Painter linePainter = new Painter();
+
+    private final SetCoverSolver setCoverSolver = new SetCoverSolver();
+    private boolean setCoverEnabled = false;
+    private int setCoverSolutionSize;
+
+    private final LocalSearchOptimizer optimizer = new LocalSearchOptimizer(2016);
+    private long optimizationMillis = 0;
+
+    private SolutionCache cache;
+    private boolean lastSolutionCached;
+
+    /**
+     * Constructs a <tt>PaintSolver</tt> that runs the strategies on the common fork-join pool.
+     */
+    public PaintSolver() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs a <tt>PaintSolver</tt> that runs the strategies on the supplied executor. An
+     * executor that runs tasks on the calling thread (e.g. {@code Runnable::run}) solves serially.
+     */
+    public PaintSolver(Executor executor) {
+        if (executor == null) {
+            throw new NullPointerException();
+        }
+        this.executor = executor;
+    }
+
+    /**
+     * Turns the set cover strategy on or off (off by default).
+     */
+    public void setSetCoverEnabled(boolean enabled) {
+        this.setCoverEnabled = enabled;
+    }
+
+    public boolean isSetCoverEnabled() {
+        return setCoverEnabled;
+    }
+
+    /**
+     * Sets how long (in milliseconds) each solution is improved by local search after the greedy
+     * strategies. 0, the default, turns the local search off.
+     */
+    public void setOptimizationBudget(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.optimizationMillis = millis;
+    }
+
+    public long getOptimizationBudget() {
+        return optimizationMillis;
+    }
+
+    /**
+     * Sets the cache to look solutions up in and store them in, or null (the default) for none.
+     */
+    public void setCache(SolutionCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Returns true if the last solve was a cache hit, in which case the strategies didn't run and
+     * their solution sizes and the picture are from an earlier solve.
+     */
+    public boolean isLastSolutionCached() {
+        return lastSolutionCached;
+    }
+
+    // Everything that changes the solution, as part of the cache key
+    private String settings() {
+        return "version=" + SOLVER_VERSION + ",setCover=" + setCoverEnabled + ",optimizationMillis=" + optimizationMillis;
+    }
+
+    /**
+     * Solves the picture in the file and returns the chosen commands. The returned buffer is a
+     * copy and is not affected by later calls.
+     */
+    public CommandBuffer solve(String filename) {
+        parseData(filename);
+        return solve(picture);
+    }
+
+    /**
+     * Solves the picture and returns the chosen commands. The picture itself is not painted on,
+     * and the returned buffer is a copy that is not affected by later calls.
+     */
+    public CommandBuffer solve(PaintGrid picture) {
+
+        lastSolutionCached = false;
+        if (cache != null) {
+            CommandBuffer cached = cache.get(picture, settings());
+            if (cached != null) {
+                lastSolutionCached = true;
+                return cached;
+            }
+        }
+
+        squareLinePainter.load(picture);
+        linePainter.load(picture);
+
+        CompletableFuture<Void> squareLine = CompletableFuture.runAsync(() -> {
+
+            // The largest square around every centre, bucketed by size
+            squareMap.compute(picture);
+
+            squareLinePainter.fillSquareGroups(squareMap);
+            squareLinePainter.findAndFillLines();
+            // Fill all empty spots
+            squareLinePainter.fillCells();
+
+        }, executor);
+
+        CompletableFuture<Void> line = CompletableFuture.runAsync(() -> {
+
+            linePainter.findAndFillLines();
+            // Fill all empty spots
+            linePainter.fillCells();
+
+        }, executor);
+
+        CompletableFuture<CommandBuffer> setCover = setCoverEnabled
+                ? CompletableFuture.supplyAsync(() -> setCoverSolver.solve(picture), executor)
+                : CompletableFuture.completedFuture(null);
+
+        try {
+            CompletableFuture.allOf(squareLine, line, setCover).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+
+        CommandBuffer squareLineSolution = squareLinePainter.getCommands();
+        CommandBuffer lineSolution = linePainter.getCommands();
+        CommandBuffer solution = (lineSolution.size() < squareLineSolution.size()) ? lineSolution : squareLineSolution;
+
+        CommandBuffer setCoverSolution = setCover.join();
+        setCoverSolutionSize = (setCoverSolution != null) ? setCoverSolution.size() : 0;
+        if (setCoverSolution != null && setCoverSolution.size() < solution.size()) {
+            solution = setCoverSolution;
+        }
+        solution = (optimizationMillis > 0)
+                ? optimizer.optimize(picture, solution, optimizationMillis)
+                : solution.snapshot();
+        if (cache != null) {
+            cache.put(picture, settings(), solution);
+        }
+        return solution;
+    }
+
+    public int getSquareLineSolutionSize() {
+        return squareLinePainter.getCommands().size();
+    }
+
+    public int getLineSolutionSize() {
+        return linePainter.getCommands().size();
+    }
+
+    /**
+     * Returns the size of the set cover solution of the last solve, or 0 if the strategy is off.
+     */
+    public int getSetCoverSolutionSize() {
+        return setCoverSolutionSize;
+    }
+
+    /**
+     * Returns the grid of the last solve, as painted by the line-only strategy.
+     */
+    public PaintGrid getPicture() {
+        return linePainter.getPicture();
+    }
+
+    public void parseData(String filename) {
+        try {
+            readPicture(filename, picture);
+        } catch (IOException e) {
+            System.out.println("Could not read input file!");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Reads the picture in the file into the grid, which is reset to the size of the picture.
+     *
+     * @throws IOException if the file can't be read.
+     */
+    public static void readPicture(String filename, PaintGrid picture) throws IOException {
+        PictureLoader.load(filename, picture);
+    }
+
+    public void printPicture() {
+        PaintGrid picture = getPicture();
+        StringBuilder s = new StringBuilder();
+        for (int y = 0; y < picture.getHeight(); y++) {
+            for (int x = 0; x < picture.getWidth(); x++) {
+                s.append(picture.isPainted(x, y)  ? "O" : (picture.isDoPaint(x, y) ? "." : " "));
+            }
+            s.append("\n");
+        }
+        System.out.println(s.toString());
+    }
+}
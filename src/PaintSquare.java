@@ -1,3 +1,6 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
 public class PaintSquare implements Command {
     int r;
     int c;
@@ -15,15 +18,18 @@ public class PaintSquare implements Command {
     }
 
     @Override
-    public void paint(PracticeProblem.State[][] wall) {
-        int startX = r - s;
-        int startY = c - s;
-        int side = 2*s + 1;
-        for (int x = startX; x < startX+side; x++) {
-            for (int y = startY; y < startY+side; y++) {
-                wall[y][x] = PracticeProblem.State.PAINTED;
-            }
-        }
+    public void writeTo(Appendable out) throws IOException {
+        CommandFormat.append(out, CommandFormat.PAINT_SQUARE, c, r, s);
+    }
+
+    @Override
+    public void writeTo(ByteBuffer out) {
+        CommandFormat.put(out, CommandFormat.PAINT_SQUARE_BYTES, c, r, s);
+    }
+
+    @Override
+    public void paint(PaintGrid wall) {
+        wall.paintRect(r - s, c - s, r + s, c + s);
     }
 
     @Override
@@ -0,0 +1,249 @@
+import java.util.Arrays;
+
+/**
+ *
+ * A <tt>Painter</tt> runs the greedy paint heuristics (squares, lines and single cells) on its own
+ * copy of a picture and collects the commands it places. Its grid, run index and scratch arrays are
+ * reused by the next {@code load} if they are large enough.
+ *
+ */
+public class Painter {
+
+    private int w, h;
+    private final PaintGrid picture = new PaintGrid(0, 0);
+    private final RunIndex runIndex = new RunIndex();
+    private final CommandBuffer commands = new CommandBuffer();
+
+    // Candidate lines of the current findAndFillLines pass, see encodeLine
+    private long[] lineBuffer = new long[0];
+
+    // Centre lists of fillSquareGroups
+    private int[] centres = new int[0];
+    private int[] merged = new int[0];
+
+    /**
+     * Starts over on a copy of the picture (target and paint) and forgets all placed commands.
+     *
+     * @throws IllegalArgumentException if the picture is wider or higher than 2097151 cells.
+     */
+    public void load(PaintGrid source) {
+        if (source.getWidth() > MAX_COORDINATE || source.getHeight() > MAX_COORDINATE) {
+            throw new IllegalArgumentException("Picture too large: " + source.getWidth() + "x" + source.getHeight());
+        }
+        picture.copyFrom(source);
+        w = picture.getWidth();
+        h = picture.getHeight();
+        commands.clear();
+    }
+
+    public PaintGrid getPicture() {
+        return picture;
+    }
+
+    public CommandBuffer getCommands() {
+        return commands;
+    }
+
+    public boolean linesFinished() {
+        return !runIndex().hasLines();
+    }
+
+    // The runs are kept up to date by every paint once the index is attached
+    private RunIndex runIndex() {
+        if (picture.getRunIndex() == null) {
+            runIndex.rebuild(picture);
+            picture.setRunIndex(runIndex);
+        }
+        return picture.getRunIndex();
+    }
+
+    //
+    // A candidate line packed into a long, so that sorting the longs ascending sorts the lines by
+    // length descending (and then in the order they were found). From the high bits:
+    // 21 bits (MAX_COORDINATE - length), 1 bit vertical, 21 bits row/column, 21 bits start.
+    // The top bit is flipped so that the signed sort orders the fields as unsigned.
+    //
+
+    private static final int MAX_COORDINATE = 0x1FFFFF;
+
+    private static long encodeLine(int length, boolean vertical, int line, int start) {
+        long encoded = ((long) (MAX_COORDINATE - length) << 43) | ((vertical ? 1L : 0L) << 42) | ((long) line << 21) | start;
+        return encoded ^ Long.MIN_VALUE;
+    }
+
+    private static PaintLine decodeLine(long encoded) {
+        encoded ^= Long.MIN_VALUE;
+        int length = MAX_COORDINATE - (int) (encoded >>> 43);
+        int line = (int) (encoded >>> 21) & MAX_COORDINATE;
+        int start = (int) encoded & MAX_COORDINATE;
+        if ((encoded & (1L << 42)) != 0) {
+            return new PaintLine(line, start, line, start + length - 1);
+        } else {
+            return new PaintLine(start, line, start + length - 1, line);
+        }
+    }
+
+    private int addLine(int count, long encoded) {
+        if (count == lineBuffer.length) {
+            lineBuffer = Arrays.copyOf(lineBuffer, Math.max(16, 2 * count));
+        }
+        lineBuffer[count] = encoded;
+        return count + 1;
+    }
+
+    public void findAndFillLines() {
+        findAndFillLines(Deadline.NONE);
+    }
+
+    /**
+     * Places lines like {@link #findAndFillLines()}, but stops early if the deadline passes.
+     * Returns true if all lines were placed.
+     */
+    public boolean findAndFillLines(Deadline deadline) {
+        RunIndex runs = runIndex();
+
+        do {
+            if (deadline.isPassed()) {
+                return false;
+            }
+
+            int lineCount = 0;
+
+            // Horizontal
+            for (int y = 0; y < h; y++) {
+                for (int i = 0; i < runs.getRowRunCount(y); i++) {
+                    int start = runs.getRowRunStart(y, i);
+                    int end = runs.getRowRunEnd(y, i);
+                    if (end > start) {
+                        lineCount = addLine(lineCount, encodeLine(end - start + 1, false, y, start));
+                    }
+                }
+            }
+
+            // Vertical
+            for (int x = 0; x < w; x++) {
+                for (int i = 0; i < runs.getColumnRunCount(x); i++) {
+                    int start = runs.getColumnRunStart(x, i);
+                    int end = runs.getColumnRunEnd(x, i);
+                    if (end > start) {
+                        lineCount = addLine(lineCount, encodeLine(end - start + 1, true, x, start));
+                    }
+                }
+            }
+
+            //
+            // Sort all lines descending, depending on its length
+            //
+            Arrays.sort(lineBuffer, 0, lineCount);
+
+            //
+            // Fill in complete lines
+            //
+            for (int i = 0; i < lineCount; i++) {
+                if ((i & 0xF) == 0xF && deadline.isPassed()) {
+                    return false;
+                }
+                PaintLine c = decodeLine(lineBuffer[i]);
+
+                // Check if still possible
+                if (c.emptySpots(picture) > 0) {
+                    continue;
+                }
+
+                // Do fill line
+                c.paint(picture);
+                commands.add(c);
+
+                //System.out.println(" - " + (int) Math.sqrt(c.getLengthSquared()) + 1 + " long line added");
+                //printPicture();
+
+            }
+        } while (!linesFinished());
+        return true;
+    }
+
+    /**
+     * Fills every cell that is still left to paint with a 1x1 square.
+     */
+    public void fillCells() {
+        RunIndex runs = runIndex();
+        for (int y = 0; y < h; y++) {
+            while (runs.getRowRunCount(y) > 0) {
+                int x = runs.getRowRunStart(y, 0);
+                picture.paintRect(x, y, x, y);
+                commands.addPaintSquare(x, y, 0);
+            }
+        }
+    }
+
+    public void fillSquareGroups(SquareMap squareMap) {
+        fillSquareGroups(squareMap, Deadline.NONE);
+    }
+
+    /**
+     * Places squares like {@link #fillSquareGroups(SquareMap)}, but stops early if the deadline
+     * passes. Returns true if all squares were placed.
+     */
+    public boolean fillSquareGroups(SquareMap squareMap, Deadline deadline) {
+        final int smallestSizeToInclude = 3;
+
+        // Centres that fit the current size, in column-major order. Going from the largest size
+        // down, the centres of each size bucket are merged in, so no size is ever rescanned.
+        if (centres.length < squareMap.getCentreCount()) {
+            centres = new int[squareMap.getCentreCount()];
+            merged = new int[squareMap.getCentreCount()];
+        }
+        int[] centres = this.centres;
+        int[] merged = this.merged;
+        int centreCount = 0;
+
+        for (int s = squareMap.getMaxSize(); s >= smallestSizeToInclude - 2; s--) {
+            if (deadline.isPassed()) {
+                return false;
+            }
+
+            int i = 0;
+            int j = squareMap.bucketStart(s);
+            int bucketEnd = squareMap.bucketEnd(s);
+            int mergedCount = 0;
+            while (i < centreCount || j < bucketEnd) {
+                if (j == bucketEnd || (i < centreCount && centres[i] < squareMap.centreAt(j))) {
+                    merged[mergedCount++] = centres[i++];
+                } else {
+                    merged[mergedCount++] = squareMap.centreAt(j++);
+                }
+            }
+            int[] swap = centres;
+            centres = merged;
+            merged = swap;
+            centreCount = mergedCount;
+
+            for (int k = 0; k < centreCount; k++) {
+                if ((k & 0xFF) == 0xFF && deadline.isPassed()) {
+                    return false;
+                }
+                int x = squareMap.centreX(centres[k]);
+                int y = squareMap.centreY(centres[k]);
+
+                // Check if it's still possible to place this one (only corners are enough)
+                if (picture.isDoPaint(x + s, y - s) &&
+                        picture.isDoPaint(x + s, y + s) &&
+                        picture.isDoPaint(x - s, y + s) &&
+                        picture.isDoPaint(x - s, y - s)) {
+
+                    // Paint this square (in picture and add command)
+                    commands.addPaintSquare(x, y, s);
+                    picture.paintRect(x - s, y - s, x + s, y + s);
+
+                    //int actualSize = s + 1 + s;
+                    //System.out.println(" - " + actualSize + "x" + actualSize + " square added:");
+                    //printPicture();
+
+                }
+
+            }
+
+        }
+        return true;
+    }
+}
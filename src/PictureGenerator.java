@@ -0,0 +1,260 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ *
+ * Generates random pictures in the .in format for scale testing. The same seed and settings
+ * always give the same picture.
+ *
+ * A picture is built by adding shapes until the requested share of the cells (the density) is
+ * ink. Each shape is picked at random by weight from:
+ *
+ *  - blobs: filled rectangles and ellipses,
+ *  - strokes: thick straight lines in any of eight directions,
+ *  - noise: small clusters of single cells,
+ *  - text: rows of blocky, segment-based glyphs.
+ *
+ * Usage: {@code java PictureGenerator <output file> <height> <width> [density] [seed]
+ * [blob,stroke,noise,text weights]}
+ *
+ */
+public class PictureGenerator {
+
+    // Give up on reaching the density after this many shapes in a row that added no ink
+    private static final int MAX_FRUITLESS_SHAPES = 10000;
+
+    private final long seed;
+    private double blobWeight = 1;
+    private double strokeWeight = 1;
+    private double noiseWeight = 0.5;
+    private double textWeight = 0.5;
+
+    private Random random;
+    private PaintGrid picture;
+    private long ink;
+
+    public PictureGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    public PictureGenerator blobs(double weight) {
+        this.blobWeight = weight;
+        return this;
+    }
+
+    public PictureGenerator strokes(double weight) {
+        this.strokeWeight = weight;
+        return this;
+    }
+
+    public PictureGenerator noise(double weight) {
+        this.noiseWeight = weight;
+        return this;
+    }
+
+    public PictureGenerator text(double weight) {
+        this.textWeight = weight;
+        return this;
+    }
+
+    /**
+     * Generates a w x h picture where about density (0 to 1) of the cells are ink.
+     */
+    public PaintGrid generate(int w, int h, double density) {
+        if (density < 0 || density > 1) {
+            throw new IllegalArgumentException();
+        }
+        double totalWeight = blobWeight + strokeWeight + noiseWeight + textWeight;
+        if (totalWeight <= 0) {
+            throw new IllegalArgumentException();
+        }
+
+        random = new Random(seed);
+        picture = new PaintGrid(w, h);
+        ink = 0;
+
+        long wanted = (long) (density * w * h);
+        int fruitless = 0;
+        while (ink < wanted && fruitless < MAX_FRUITLESS_SHAPES) {
+            long inkBefore = ink;
+
+            double pick = random.nextDouble() * totalWeight;
+            if ((pick -= blobWeight) < 0) {
+                addBlob();
+            } else if ((pick -= strokeWeight) < 0) {
+                addStroke();
+            } else if ((pick -= noiseWeight) < 0) {
+                addNoise();
+            } else {
+                addText();
+            }
+
+            fruitless = (ink == inkBefore) ? fruitless + 1 : 0;
+        }
+
+        PaintGrid result = picture;
+        picture = null;
+        return result;
+    }
+
+    //
+    // Shapes
+    //
+
+    private void setInk(int x, int y) {
+        if (x >= 0 && y >= 0 && x < picture.getWidth() && y < picture.getHeight() && !picture.isTarget(x, y)) {
+            picture.setTarget(x, y, true);
+            ink++;
+        }
+    }
+
+    private void fillRect(int fromX, int fromY, int toX, int toY) {
+        for (int y = fromY; y <= toY; y++) {
+            for (int x = fromX; x <= toX; x++) {
+                setInk(x, y);
+            }
+        }
+    }
+
+    // Shape sizes scale with the picture, so big pictures don't become pure noise
+    private int maxShapeSize() {
+        return Math.max(2, Math.min(picture.getWidth(), picture.getHeight()) / 12);
+    }
+
+    private void addBlob() {
+        int rw = 1 + random.nextInt(maxShapeSize());
+        int rh = 1 + random.nextInt(maxShapeSize());
+        int cx = random.nextInt(picture.getWidth());
+        int cy = random.nextInt(picture.getHeight());
+
+        if (random.nextBoolean()) {
+            fillRect(cx - rw / 2, cy - rh / 2, cx + rw / 2, cy + rh / 2);
+        } else {
+            double a = rw / 2.0 + 0.5;
+            double b = rh / 2.0 + 0.5;
+            for (int y = cy - rh / 2; y <= cy + rh / 2; y++) {
+                for (int x = cx - rw / 2; x <= cx + rw / 2; x++) {
+                    double dx = (x - cx) / a;
+                    double dy = (y - cy) / b;
+                    if (dx * dx + dy * dy <= 1) {
+                        setInk(x, y);
+                    }
+                }
+            }
+        }
+    }
+
+    private void addStroke() {
+        int length = 2 + random.nextInt(2 * maxShapeSize());
+        int thickness = 1 + random.nextInt(3);
+        int direction = random.nextInt(8);
+        int dx = new int[] { 1, 1, 0, -1, -1, -1, 0, 1 }[direction];
+        int dy = new int[] { 0, 1, 1, 1, 0, -1, -1, -1 }[direction];
+
+        int x = random.nextInt(picture.getWidth());
+        int y = random.nextInt(picture.getHeight());
+        for (int i = 0; i < length; i++) {
+            fillRect(x, y, x + thickness - 1, y + thickness - 1);
+            x += dx;
+            y += dy;
+        }
+    }
+
+    private void addNoise() {
+        int cx = random.nextInt(picture.getWidth());
+        int cy = random.nextInt(picture.getHeight());
+        int spread = 1 + random.nextInt(8);
+        for (int i = 0; i < 20; i++) {
+            setInk(cx + random.nextInt(2 * spread + 1) - spread, cy + random.nextInt(2 * spread + 1) - spread);
+        }
+    }
+
+    //
+    // Text is written as glyphs of up to seven segments (like a 7-segment display) with a random
+    // scale, so it gets the thin strokes, corners and gaps of real lettering.
+    //
+
+    private void addText() {
+        int scale = 1 + random.nextInt(4);
+        int glyphWidth = 4 * scale;
+        int glyphHeight = 7 * scale;
+        int glyphCount = 3 + random.nextInt(10);
+
+        int x = random.nextInt(picture.getWidth());
+        int y = random.nextInt(picture.getHeight());
+        for (int i = 0; i < glyphCount; i++) {
+            addGlyph(x, y, scale, 1 + random.nextInt(127));
+            x += glyphWidth + scale + 1;
+        }
+    }
+
+    private void addGlyph(int x, int y, int scale, int segments) {
+        int right = x + 4 * scale - 1;
+        int middle = y + 3 * scale;
+        int bottom = y + 7 * scale - 1;
+        int stroke = scale - 1;
+
+        if ((segments & 1) != 0) fillRect(x, y, right, y + stroke);                      // top
+        if ((segments & 2) != 0) fillRect(x, middle, right, middle + stroke);            // middle
+        if ((segments & 4) != 0) fillRect(x, bottom - stroke, right, bottom);            // bottom
+        if ((segments & 8) != 0) fillRect(x, y, x + stroke, middle);                     // upper left
+        if ((segments & 16) != 0) fillRect(right - stroke, y, right, middle);            // upper right
+        if ((segments & 32) != 0) fillRect(x, middle, x + stroke, bottom);               // lower left
+        if ((segments & 64) != 0) fillRect(right - stroke, middle, right, bottom);       // lower right
+    }
+
+    //
+    // Output
+    //
+
+    /**
+     * Writes the target cells of the picture to the file in the .in format.
+     */
+    public static void write(PaintGrid picture, File file) throws IOException {
+        int w = picture.getWidth();
+        int h = picture.getHeight();
+        char[] row = new char[w + 1];
+        row[w] = '\n';
+
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file, false), 1 << 16)) {
+            writer.write(h + " " + w + "\n");
+            for (int y = 0; y < h; y++) {
+                for (int x = 0; x < w; x++) {
+                    row[x] = picture.isTarget(x, y) ? '#' : '.';
+                }
+                writer.write(row);
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            System.out.println("Usage: java PictureGenerator <output file> <height> <width> [density] [seed] [blob,stroke,noise,text]");
+            System.exit(1);
+        }
+        int h = Integer.parseInt(args[1]);
+        int w = Integer.parseInt(args[2]);
+        double density = (args.length > 3) ? Double.parseDouble(args[3]) : 0.3;
+        long seed = (args.length > 4) ? Long.parseLong(args[4]) : 2016;
+
+        PictureGenerator generator = new PictureGenerator(seed);
+        if (args.length > 5) {
+            String[] weights = args[5].split(",");
+            generator.blobs(Double.parseDouble(weights[0]))
+                    .strokes(Double.parseDouble(weights[1]))
+                    .noise(Double.parseDouble(weights[2]))
+                    .text(Double.parseDouble(weights[3]));
+        }
+
+        PaintGrid picture = generator.generate(w, h, density);
+        try {
+            write(picture, new File(args[0]));
+        } catch (IOException e) {
+            System.out.println("Could not write to file for some reason!");
+            System.exit(1);
+        }
+    }
+}
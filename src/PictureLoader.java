@@ -0,0 +1,157 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ *
+ * Loads a picture in the .in format straight into a <tt>PaintGrid</tt>. The file is memory-mapped
+ * and the '#' and '.' bytes are turned into target bits directly, with no charset decoding and no
+ * objects per row or cell.
+ *
+ * Loading is done in two parallel passes: the mapped segments are first scanned for line breaks
+ * to find where every row starts, and then all rows are parsed at the same time (rows never share
+ * words in the grid).
+ *
+ */
+public class PictureLoader {
+
+    // Mappings are limited to 2 GB, so bigger files are mapped in segments
+    private static final long SEGMENT_SIZE = 1L << 30;
+
+    private static final int MAX_HEADER_LENGTH = 64;
+
+    /**
+     * Loads the picture in the file into the grid, which is reset to the size of the picture.
+     *
+     * @throws IOException if the file can't be read or isn't a valid picture.
+     */
+    public static void load(String filename, PaintGrid picture) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            long size = channel.size();
+
+            //
+            // Header: "<height> <width>"
+            //
+
+            MappedByteBuffer headerBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, MAX_HEADER_LENGTH));
+            int headerLength = 0;
+            while (headerLength < headerBuffer.limit() && headerBuffer.get(headerLength) != '\n') {
+                headerLength++;
+            }
+            if (headerLength == headerBuffer.limit()) {
+                throw new IOException("Missing picture header");
+            }
+            byte[] headerBytes = new byte[headerLength];
+            headerBuffer.get(headerBytes);
+            String[] dimension = new String(headerBytes, StandardCharsets.US_ASCII).trim().split("\\s+");
+            int h, w;
+            try {
+                h = Integer.parseInt(dimension[0]);
+                w = Integer.parseInt(dimension[1]);
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                throw new IOException("Invalid picture header", e);
+            }
+            picture.reset(w, h);
+            if (h == 0 || w == 0) {
+                return;
+            }
+
+            //
+            // Map the rows. Every segment overlaps the next by a row, so every row is completely
+            // inside the segment it starts in.
+            //
+
+            long dataStart = headerLength + 1;
+            long dataSize = size - dataStart;
+            int segmentCount = (int) Math.max(1, (dataSize + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+            MappedByteBuffer[] segments = new MappedByteBuffer[segmentCount];
+            for (int i = 0; i < segmentCount; i++) {
+                long start = dataStart + i * SEGMENT_SIZE;
+                long length = Math.min(SEGMENT_SIZE + w, size - start);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.max(0, length));
+            }
+
+            //
+            // Find the start of every row
+            //
+
+            long[][] lineBreaks = new long[segmentCount][];
+            int[] lineBreakCounts = new int[segmentCount];
+            IntStream.range(0, segmentCount).parallel().forEach(i -> {
+                MappedByteBuffer segment = segments[i];
+                int end = (int) Math.min(SEGMENT_SIZE, segment.limit());
+                long[] breaks = new long[16];
+                int count = 0;
+                for (int p = 0; p < end; p++) {
+                    if (segment.get(p) == '\n') {
+                        if (count == breaks.length) {
+                            breaks = Arrays.copyOf(breaks, 2 * count);
+                        }
+                        breaks[count++] = i * SEGMENT_SIZE + p;
+                    }
+                }
+                lineBreaks[i] = breaks;
+                lineBreakCounts[i] = count;
+            });
+
+            // rowStart[y] and rowEnd[y] are relative to dataStart; rowEnd excludes the line break
+            long[] rowStart = new long[h];
+            long[] rowEnd = new long[h];
+            int row = 0;
+            rowStart[0] = 0;
+            for (int i = 0; i < segmentCount && row < h; i++) {
+                for (int j = 0; j < lineBreakCounts[i] && row < h; j++) {
+                    rowEnd[row] = lineBreaks[i][j];
+                    row++;
+                    if (row < h) {
+                        rowStart[row] = lineBreaks[i][j] + 1;
+                    }
+                }
+            }
+            if (row < h) {
+                // The last row doesn't have to end with a line break
+                rowEnd[row] = dataSize;
+                row++;
+            }
+            if (row < h) {
+                throw new IOException("The picture has " + row + " rows, expected " + h);
+            }
+
+            //
+            // Parse the rows, 64 cells at a time
+            //
+
+            int wordsPerRow = (w + 63) >>> 6;
+            try {
+                IntStream.range(0, h).parallel().forEach(y -> {
+                    if (rowEnd[y] - rowStart[y] < w) {
+                        throw new UncheckedIOException(new IOException("Row " + y + " is shorter than " + w));
+                    }
+                    int segment = (int) (rowStart[y] / SEGMENT_SIZE);
+                    MappedByteBuffer buffer = segments[segment];
+                    int offset = (int) (rowStart[y] - segment * SEGMENT_SIZE);
+
+                    for (int word = 0; word < wordsPerRow; word++) {
+                        long bits = 0;
+                        int from = word << 6;
+                        int to = Math.min(w, from + 64);
+                        for (int x = from; x < to; x++) {
+                            if (buffer.get(offset + x) == '#') {
+                                bits |= 1L << x;
+                            }
+                        }
+                        picture.setTargetWord(y, word, bits);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,293 @@
+import java.util.Arrays;
+
+/**
+ *
+ * An index of the runs of DO_PAINT cells (target cells that are not painted yet) in every row and
+ * every column of a <tt>PaintGrid</tt>. The index is kept up to date by the grid it's attached to:
+ * every paint shrinks, splits or removes the runs it touches, so the runs never have to be found
+ * again by scanning the picture.
+ *
+ * The runs of a row (or column) are stored sorted as inclusive (start, end) pairs in an int[].
+ *
+ */
+public class RunIndex {
+
+    private int w, h;
+
+    private int[][] rowRuns = new int[0][];
+    private int[] rowRunCounts = new int[0];
+    private int[][] columnRuns = new int[0][];
+    private int[] columnRunCounts = new int[0];
+
+    // Rebuild scratch: the DO_PAINT words of the row above, and where the open column runs start
+    private long[] previousRow = new long[0];
+    private int[] columnRunStarts = new int[0];
+
+    public RunIndex() {
+    }
+
+    public RunIndex(PaintGrid grid) {
+        rebuild(grid);
+    }
+
+    /**
+     * Finds all runs of the grid again. The run arrays of a previous grid are reused where possible.
+     */
+    public void rebuild(PaintGrid grid) {
+        this.w = grid.getWidth();
+        this.h = grid.getHeight();
+        if (rowRuns.length < h) {
+            rowRuns = Arrays.copyOf(rowRuns, h);
+            rowRunCounts = new int[h];
+        }
+        if (columnRuns.length < w) {
+            columnRuns = Arrays.copyOf(columnRuns, w);
+            columnRunCounts = new int[w];
+        }
+        Arrays.fill(rowRunCounts, 0);
+        Arrays.fill(columnRunCounts, 0);
+
+        for (int x = 0; x < w; x++) {
+            if (columnRuns[x] == null) {
+                columnRuns[x] = new int[4];
+            }
+        }
+
+        // Scan 64 cells at a time: the row runs from the bits of the row, and the column runs from
+        // the bits that change between one row and the next
+        int wordsPerRow = grid.getWordsPerRow();
+        if (previousRow.length < wordsPerRow) {
+            previousRow = new long[wordsPerRow];
+            columnRunStarts = new int[wordsPerRow << 6];
+        }
+        Arrays.fill(previousRow, 0, wordsPerRow, 0L);
+
+        for (int y = 0; y <= h; y++) {
+            if (y < h && rowRuns[y] == null) {
+                rowRuns[y] = new int[4];
+            }
+            int start = -1;
+            for (int word = 0; word < wordsPerRow; word++) {
+                long bits = (y < h) ? grid.getTargetWord(y, word) & ~grid.getPaintedWord(y, word) : 0L;
+                int base = word << 6;
+
+                long columnEnds = previousRow[word] & ~bits;
+                for (; columnEnds != 0; columnEnds &= columnEnds - 1) {
+                    int x = base + Long.numberOfTrailingZeros(columnEnds);
+                    columnRuns[x] = append(columnRuns[x], columnRunCounts[x]++, columnRunStarts[x], y - 1);
+                }
+                long columnStarts = bits & ~previousRow[word];
+                for (; columnStarts != 0; columnStarts &= columnStarts - 1) {
+                    columnRunStarts[base + Long.numberOfTrailingZeros(columnStarts)] = y;
+                }
+                previousRow[word] = bits;
+
+                int position = 0;
+                while (position < 64) {
+                    long next = (start >= 0 ? ~bits : bits) & (-1L << position);
+                    if (next == 0) {
+                        break;
+                    }
+                    position = Long.numberOfTrailingZeros(next);
+                    if (start >= 0) {
+                        rowRuns[y] = append(rowRuns[y], rowRunCounts[y]++, start, base + position - 1);
+                        start = -1;
+                    } else {
+                        start = base + position;
+                    }
+                }
+            }
+            if (start >= 0) {
+                rowRuns[y] = append(rowRuns[y], rowRunCounts[y]++, start, w - 1);
+            }
+        }
+    }
+
+    //
+    // Queries
+    //
+
+    public int getRowRunCount(int y) {
+        return rowRunCounts[y];
+    }
+
+    public int getRowRunStart(int y, int i) {
+        return rowRuns[y][2 * i];
+    }
+
+    public int getRowRunEnd(int y, int i) {
+        return rowRuns[y][2 * i + 1];
+    }
+
+    public int getColumnRunCount(int x) {
+        return columnRunCounts[x];
+    }
+
+    public int getColumnRunStart(int x, int i) {
+        return columnRuns[x][2 * i];
+    }
+
+    public int getColumnRunEnd(int x, int i) {
+        return columnRuns[x][2 * i + 1];
+    }
+
+    /**
+     * Returns true if some row or column still has a run of two or more DO_PAINT cells.
+     */
+    public boolean hasLines() {
+        for (int y = 0; y < h; y++) {
+            if (hasLongRun(rowRuns[y], rowRunCounts[y])) {
+                return true;
+            }
+        }
+        for (int x = 0; x < w; x++) {
+            if (hasLongRun(columnRuns[x], columnRunCounts[x])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasLongRun(int[] runs, int count) {
+        for (int i = 0; i < count; i++) {
+            if (runs[2 * i + 1] > runs[2 * i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //
+    // Updates (called by the attached PaintGrid)
+    //
+
+    void paintRow(int y, int fromX, int toX) {
+        removeRange(rowRuns, rowRunCounts, y, fromX, toX);
+        for (int x = fromX; x <= toX; x++) {
+            removeRange(columnRuns, columnRunCounts, x, y, y);
+        }
+    }
+
+    void paintColumn(int x, int fromY, int toY) {
+        removeRange(columnRuns, columnRunCounts, x, fromY, toY);
+        for (int y = fromY; y <= toY; y++) {
+            removeRange(rowRuns, rowRunCounts, y, x, x);
+        }
+    }
+
+    void paintRect(int fromX, int fromY, int toX, int toY) {
+        for (int y = fromY; y <= toY; y++) {
+            removeRange(rowRuns, rowRunCounts, y, fromX, toX);
+        }
+        for (int x = fromX; x <= toX; x++) {
+            removeRange(columnRuns, columnRunCounts, x, fromY, toY);
+        }
+    }
+
+    // An erased target cell has to be painted again
+    void eraseTargetCell(int x, int y) {
+        addCell(rowRuns, rowRunCounts, y, x);
+        addCell(columnRuns, columnRunCounts, x, y);
+    }
+
+    //
+    // Run list helpers
+    //
+
+    private static int[] append(int[] runs, int index, int start, int end) {
+        if (2 * index + 2 > runs.length) {
+            runs = Arrays.copyOf(runs, runs.length * 2);
+        }
+        runs[2 * index] = start;
+        runs[2 * index + 1] = end;
+        return runs;
+    }
+
+    // Index of the first run that ends at or after pos
+    private static int firstEndingAtOrAfter(int[] runs, int count, int pos) {
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (runs[2 * mid + 1] < pos) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static void removeRange(int[][] allRuns, int[] counts, int line, int from, int to) {
+        int[] runs = allRuns[line];
+        int count = counts[line];
+
+        int first = firstEndingAtOrAfter(runs, count, from);
+        if (first == count || runs[2 * first] > to) {
+            return; // nothing to remove
+        }
+        int last = first;
+        while (last + 1 < count && runs[2 * (last + 1)] <= to) {
+            last++;
+        }
+
+        // What is left of the first and last run outside of the removed range
+        int leftStart = runs[2 * first];
+        int rightEnd = runs[2 * last + 1];
+        int pieces = 0;
+        if (leftStart < from) pieces++;
+        if (rightEnd > to) pieces++;
+
+        int removed = last - first + 1;
+        int newCount = count - removed + pieces;
+        if (2 * newCount > runs.length) {
+            runs = Arrays.copyOf(runs, Math.max(2 * newCount, runs.length * 2));
+            allRuns[line] = runs;
+        }
+        System.arraycopy(runs, 2 * (last + 1), runs, 2 * (first + pieces), 2 * (count - last - 1));
+
+        int i = first;
+        if (leftStart < from) {
+            runs[2 * i] = leftStart;
+            runs[2 * i + 1] = from - 1;
+            i++;
+        }
+        if (rightEnd > to) {
+            runs[2 * i] = to + 1;
+            runs[2 * i + 1] = rightEnd;
+        }
+        counts[line] = newCount;
+    }
+
+    private static void addCell(int[][] allRuns, int[] counts, int line, int pos) {
+        int[] runs = allRuns[line];
+        int count = counts[line];
+
+        // The run after pos, and whether it and the run before touch pos
+        int next = firstEndingAtOrAfter(runs, count, pos);
+        if (next < count && runs[2 * next] <= pos) {
+            return; // already part of a run
+        }
+        boolean joinsPrevious = next > 0 && runs[2 * (next - 1) + 1] == pos - 1;
+        boolean joinsNext = next < count && runs[2 * next] == pos + 1;
+
+        if (joinsPrevious && joinsNext) {
+            runs[2 * (next - 1) + 1] = runs[2 * next + 1];
+            System.arraycopy(runs, 2 * (next + 1), runs, 2 * next, 2 * (count - next - 1));
+            counts[line] = count - 1;
+        } else if (joinsPrevious) {
+            runs[2 * (next - 1) + 1] = pos;
+        } else if (joinsNext) {
+            runs[2 * next] = pos;
+        } else {
+            if (2 * count + 2 > runs.length) {
+                runs = Arrays.copyOf(runs, runs.length * 2);
+                allRuns[line] = runs;
+            }
+            System.arraycopy(runs, 2 * next, runs, 2 * (next + 1), 2 * (count - next));
+            runs[2 * next] = pos;
+            runs[2 * next + 1] = pos;
+            counts[line] = count + 1;
+        }
+    }
+}
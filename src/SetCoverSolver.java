@@ -0,0 +1,359 @@
+import java.util.Arrays;
+
+/**
+ *
+ * Solves a picture as a weighted set cover. Every candidate command (a square, a row line or a
+ * column line) is scored by the number of commands it saves: the target cells it would paint that
+ * are still left, minus one for itself and one for every hole in it. Squares may have a few holes
+ * (cells that must not be painted), which are erased with EraseCell commands at the end.
+ *
+ * Candidates are picked with a lazy greedy: all candidates go into a priority queue with their gain,
+ * and when the best one is taken out its gain is recomputed. Gains only ever go down as cells are
+ * painted, so if the recomputed gain is still at least the next gain in the queue, the candidate
+ * really is the best one and is placed. Otherwise it goes back in with its new gain. This only
+ * rescores the candidates that come up to the top of the queue instead of all of them per step.
+ *
+ * Gains are cheap to recompute: the holes of a square are counted in a summed-area table of the
+ * original picture, and the cells still left to paint are counted 64 at a time in the rows of the
+ * grid.
+ *
+ * Counting every cell as one saved command overrates squares with holes, since most of their cells
+ * could be painted by a few long lines instead. So when a square with holes comes out on top, it's
+ * only placed if painting its remaining cells with lines would cost more than its erases.
+ *
+ * A <tt>SetCoverSolver</tt> reuses its grid and arrays for the next picture, and must only be used
+ * by one thread at a time.
+ *
+ */
+public class SetCoverSolver {
+
+    // How much larger than the largest hole free square a square with holes can be
+    private static final int MAX_EXTRA_SIZE = 3;
+
+    private static final int SQUARE = 0;
+    private static final int ROW_LINE = 1;
+    private static final int COLUMN_LINE = 2;
+
+    private int w, h;
+    private final PaintGrid picture = new PaintGrid(0, 0);
+    private final SquareMap squareMap = new SquareMap();
+    private SummedAreaTable holes;
+
+    // Length of the longest target run (row or column) through each cell, index y * w + x
+    private short[] runLengths = new short[0];
+    private final CommandBuffer commands = new CommandBuffer();
+
+    // Candidates: the cell index (y * w + x) of the centre of a square or the start of a line,
+    // and (size or length) << 2 | type
+    private int candidateCount;
+    private int[] candidateCells = new int[0];
+    private int[] candidateInfo = new int[0];
+
+    // Max-heap of gain << 32 | candidate
+    private long[] heap = new long[0];
+    private int heapSize;
+
+    /**
+     * Solves the picture (which is not painted on) and returns the commands. The returned buffer is
+     * reused by the next call.
+     */
+    public CommandBuffer solve(PaintGrid source) {
+        return solve(source, Deadline.NONE);
+    }
+
+    /**
+     * Solves the picture like {@link #solve(PaintGrid)}, but stops placing candidates if the
+     * deadline passes and paints the cells that are left one by one. Finding the candidates is not
+     * cut short.
+     */
+    public CommandBuffer solve(PaintGrid source, Deadline deadline) {
+        picture.copyFrom(source);
+        picture.clearPainted();
+        w = picture.getWidth();
+        h = picture.getHeight();
+        commands.clear();
+
+        squareMap.compute(picture);
+        holes = new SummedAreaTable(picture);
+        findRunLengths();
+
+        findCandidates();
+        placeCandidates(deadline);
+        fillCells();
+        eraseHoles();
+
+        holes = null;
+        return commands;
+    }
+
+    //
+    // Candidates
+    //
+
+    private void findCandidates() {
+        candidateCount = 0;
+        heapSize = 0;
+
+        // Squares: the best size around every target cell, allowing a few holes
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                int size = squareMap.getSize(x, y);
+                if (size < 0) {
+                    continue;
+                }
+                int bestSize = 0;
+                int bestGain = 0;
+                for (int s = Math.max(1, size); s <= size + MAX_EXTRA_SIZE; s++) {
+                    if (x - s < 0 || y - s < 0 || x + s >= w || y + s >= h) {
+                        break;
+                    }
+                    int gain = squareGain(x, y, s, (2 * s + 1) * (2 * s + 1) - holes.count(x - s, y - s, x + s, y + s));
+                    if (gain > bestGain) {
+                        bestGain = gain;
+                        bestSize = s;
+                    }
+                }
+                if (bestSize > 0) {
+                    addCandidate(y * w + x, bestSize, SQUARE, bestGain);
+                }
+            }
+        }
+
+        // Lines: the maximal runs of target cells
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; ) {
+                if (!picture.isTarget(x, y)) {
+                    x++;
+                    continue;
+                }
+                int start = x;
+                while (x < w && picture.isTarget(x, y)) x++;
+                if (x - start > 1) {
+                    addCandidate(y * w + start, x - start, ROW_LINE, x - start - 1);
+                }
+            }
+        }
+        for (int x = 0; x < w; x++) {
+            for (int y = 0; y < h; ) {
+                if (!picture.isTarget(x, y)) {
+                    y++;
+                    continue;
+                }
+                int start = y;
+                while (y < h && picture.isTarget(x, y)) y++;
+                if (y - start > 1) {
+                    addCandidate(start * w + x, y - start, COLUMN_LINE, y - start - 1);
+                }
+            }
+        }
+    }
+
+    private void addCandidate(int cell, int sizeOrLength, int type, int gain) {
+        if (candidateCount == candidateCells.length) {
+            int capacity = Math.max(16, 2 * candidateCount);
+            candidateCells = Arrays.copyOf(candidateCells, capacity);
+            candidateInfo = Arrays.copyOf(candidateInfo, capacity);
+        }
+        candidateCells[candidateCount] = cell;
+        candidateInfo[candidateCount] = (sizeOrLength << 2) | type;
+        push(gain, candidateCount);
+        candidateCount++;
+    }
+
+    // Commands saved by a square that paints the given number of cells that are still left
+    private int squareGain(int x, int y, int s, int cellsLeft) {
+        return cellsLeft - 1 - holes.count(x - s, y - s, x + s, y + s);
+    }
+
+    private int gain(int candidate) {
+        int x = candidateCells[candidate] % w;
+        int y = candidateCells[candidate] / w;
+        int size = candidateInfo[candidate] >>> 2;
+        switch (candidateInfo[candidate] & 3) {
+            case SQUARE: {
+                int cellsLeft = 0;
+                for (int row = y - size; row <= y + size; row++) {
+                    cellsLeft += picture.countDoPaint(row, x - size, x + size);
+                }
+                return squareGain(x, y, size, cellsLeft);
+            }
+            case ROW_LINE:
+                return picture.countDoPaint(y, x, x + size - 1) - 1;
+            default: {
+                int cellsLeft = 0;
+                for (int row = y; row < y + size; row++) {
+                    if (picture.isDoPaint(x, row)) {
+                        cellsLeft++;
+                    }
+                }
+                return cellsLeft - 1;
+            }
+        }
+    }
+
+    private void place(int candidate) {
+        int x = candidateCells[candidate] % w;
+        int y = candidateCells[candidate] / w;
+        int size = candidateInfo[candidate] >>> 2;
+        switch (candidateInfo[candidate] & 3) {
+            case SQUARE:
+                picture.paintRect(x - size, y - size, x + size, y + size);
+                commands.addPaintSquare(x, y, size);
+                break;
+            case ROW_LINE:
+                picture.paintRow(y, x, x + size - 1);
+                commands.addPaintLine(x, y, x + size - 1, y);
+                break;
+            default:
+                picture.paintColumn(x, y, y + size - 1);
+                commands.addPaintLine(x, y, x, y + size - 1);
+        }
+    }
+
+    private void findRunLengths() {
+        if (runLengths.length < w * h) {
+            runLengths = new short[w * h];
+        }
+        Arrays.fill(runLengths, 0, w * h, (short) 0);
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; ) {
+                int start = x;
+                while (x < w && picture.isTarget(x, y)) x++;
+                for (int i = start; i < x; i++) {
+                    runLengths[y * w + i] = (short) Math.min(Short.MAX_VALUE, x - start);
+                }
+                x++;
+            }
+        }
+        for (int x = 0; x < w; x++) {
+            for (int y = 0; y < h; ) {
+                int start = y;
+                while (y < h && picture.isTarget(x, y)) y++;
+                for (int i = start; i < y; i++) {
+                    runLengths[i * w + x] = (short) Math.max(runLengths[i * w + x], Math.min(Short.MAX_VALUE, y - start));
+                }
+                y++;
+            }
+        }
+    }
+
+    // A square with holes costs an erase per hole, so it's only worth it if painting the cells it
+    // paints with lines would cost more. A cell is worth 1 / (longest run through it) of a line.
+    private boolean isWorthErasing(int candidate) {
+        if ((candidateInfo[candidate] & 3) != SQUARE) {
+            return true;
+        }
+        int x = candidateCells[candidate] % w;
+        int y = candidateCells[candidate] / w;
+        int size = candidateInfo[candidate] >>> 2;
+        int holeCount = holes.count(x - size, y - size, x + size, y + size);
+        if (holeCount == 0) {
+            return true;
+        }
+        double lineCost = 0;
+        for (int row = y - size; row <= y + size; row++) {
+            for (int column = x - size; column <= x + size; column++) {
+                if (picture.isDoPaint(column, row)) {
+                    lineCost += 1.0 / runLengths[row * w + column];
+                }
+            }
+        }
+        return lineCost > 1 + holeCount;
+    }
+
+    //
+    // Lazy greedy
+    //
+
+    private void placeCandidates(Deadline deadline) {
+        for (int step = 1; heapSize > 0; step++) {
+            if ((step & 0x3FF) == 0 && deadline.isPassed()) {
+                return;
+            }
+            int candidate = (int) pop();
+            int gain = gain(candidate);
+            if (gain <= 0) {
+                // Gains never go up again, so it will never be worth it
+                continue;
+            }
+            if (heapSize == 0 || gain >= (int) (heap[0] >> 32)) {
+                if (isWorthErasing(candidate)) {
+                    place(candidate);
+                }
+            } else {
+                push(gain, candidate);
+            }
+        }
+    }
+
+    private void fillCells() {
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                if (picture.isDoPaint(x, y)) {
+                    picture.paintCell(x, y);
+                    commands.addPaintSquare(x, y, 0);
+                }
+            }
+        }
+    }
+
+    // Every cell that got painted but isn't a target is a hole of some square
+    private void eraseHoles() {
+        int wordsPerRow = picture.getWordsPerRow();
+        for (int y = 0; y < h; y++) {
+            for (int word = 0; word < wordsPerRow; word++) {
+                long extra = picture.getPaintedWord(y, word) & ~picture.getTargetWord(y, word);
+                for (; extra != 0; extra &= extra - 1) {
+                    int x = (word << 6) + Long.numberOfTrailingZeros(extra);
+                    picture.eraseCell(x, y);
+                    commands.addEraseCell(x, y);
+                }
+            }
+        }
+    }
+
+    //
+    // Binary max-heap of longs
+    //
+
+    private void push(int gain, int candidate) {
+        if (heapSize == heap.length) {
+            heap = Arrays.copyOf(heap, Math.max(16, 2 * heapSize));
+        }
+        long entry = ((long) gain << 32) | (candidate & 0xFFFFFFFFL);
+        int i = heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] >= entry) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = entry;
+    }
+
+    private long pop() {
+        long top = heap[0];
+        long last = heap[--heapSize];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && heap[child + 1] > heap[child]) {
+                child++;
+            }
+            if (last >= heap[child]) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        if (heapSize > 0) {
+            heap[i] = last;
+        }
+        return top;
+    }
+}
@@ -0,0 +1,246 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ *
+ * A cache of solutions on disk, so that a picture that was solved before (by any process using the
+ * same directory) doesn't have to be solved again.
+ *
+ * Solutions are keyed by a SHA-256 hash of the picture (its size and target cells) and a string
+ * describing the solver settings, and stored one per file in a compact binary format. Every
+ * solution read from the cache is verified against the picture before it's returned, and a
+ * corrupt or wrong file is deleted. The directory is kept under a size limit by deleting the least
+ * recently used files, where a hit counts as a use. Temporary files left behind by a process that
+ * died while writing are deleted by the eviction once they are a few minutes old.
+ *
+ * The cache can be shared by threads and processes: files are written to a temporary file first
+ * and then moved into place.
+ *
+ */
+public class SolutionCache {
+
+    private static final String SUFFIX = ".sol";
+    private static final String TEMPORARY_PREFIX = "solution";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    // Age after which a temporary file can't still be being written
+    private static final long STALE_TEMPORARY_MILLIS = 10 * 60 * 1000;
+    private static final int MAGIC = 0x50534F4C; // "PSOL"
+
+    private final File directory;
+    private final long maxBytes;
+
+    /**
+     * Constructs a <tt>SolutionCache</tt> in the directory, which is created if it doesn't exist,
+     * that holds at most maxBytes bytes of solutions.
+     *
+     * @throws IOException if the directory can't be created.
+     */
+    public SolutionCache(File directory, long maxBytes) throws IOException {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException();
+        }
+        Files.createDirectories(directory.toPath());
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the cached solution of the picture for the settings, or null if there is none (or it
+     * doesn't solve the picture).
+     */
+    public CommandBuffer get(PaintGrid picture, String settings) {
+        File file = fileFor(picture, settings);
+        if (!file.isFile()) {
+            return null;
+        }
+
+        CommandBuffer commands;
+        try {
+            commands = read(file);
+        } catch (IOException e) {
+            file.delete();
+            return null;
+        }
+
+        PaintGrid replay = picture.copy();
+        replay.clearPainted();
+        if (!SolutionVerifier.verify(replay, commands).isValid()) {
+            file.delete();
+            return null;
+        }
+
+        // Mark as recently used
+        file.setLastModified(System.currentTimeMillis());
+        return commands;
+    }
+
+    /**
+     * Stores the solution of the picture for the settings, and evicts the least recently used
+     * solutions if the cache has grown too large. A failure to write is ignored, since the cache
+     * is only an optimization.
+     */
+    public void put(PaintGrid picture, String settings, CommandBuffer commands) {
+        File file = fileFor(picture, settings);
+        try {
+            File temporary = File.createTempFile(TEMPORARY_PREFIX, TEMPORARY_SUFFIX, directory);
+            try {
+                write(temporary, commands);
+                Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                temporary.delete();
+            }
+        } catch (IOException e) {
+            return;
+        }
+        evict();
+    }
+
+    private synchronized void evict() {
+        deleteStaleTemporaries();
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (files == null) {
+            return;
+        }
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (int i = 0; i < files.length && total > maxBytes; i++) {
+            long length = files[i].length();
+            if (files[i].delete()) {
+                total -= length;
+            }
+        }
+    }
+
+    private void deleteStaleTemporaries() {
+        File[] temporaries = directory.listFiles((dir, name) -> name.startsWith(TEMPORARY_PREFIX) && name.endsWith(TEMPORARY_SUFFIX));
+        if (temporaries == null) {
+            return;
+        }
+        long staleBefore = System.currentTimeMillis() - STALE_TEMPORARY_MILLIS;
+        for (File temporary : temporaries) {
+            if (temporary.lastModified() < staleBefore) {
+                temporary.delete();
+            }
+        }
+    }
+
+    //
+    // Keys
+    //
+
+    private File fileFor(PaintGrid picture, String settings) {
+        return new File(directory, hash(picture, settings) + SUFFIX);
+    }
+
+    /**
+     * Returns the hex SHA-256 hash of the picture's size and target cells and the settings.
+     */
+    public static String hash(PaintGrid picture, String settings) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform has SHA-256
+            throw new IllegalStateException(e);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(8 * 1024);
+        buffer.putInt(picture.getWidth()).putInt(picture.getHeight());
+        for (int y = 0; y < picture.getHeight(); y++) {
+            for (int word = 0; word < picture.getWordsPerRow(); word++) {
+                if (buffer.remaining() < 8) {
+                    digest.update(buffer.array(), 0, buffer.position());
+                    buffer.clear();
+                }
+                buffer.putLong(picture.getTargetWord(y, word));
+            }
+        }
+        digest.update(buffer.array(), 0, buffer.position());
+        digest.update(settings.getBytes(StandardCharsets.UTF_8));
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    //
+    // File format: magic, command count, then per command the opcode byte and its operands
+    // (3 for PAINT_SQUARE, 4 for PAINT_LINE, 2 for ERASE_CELL) as ints
+    //
+
+    private static void write(File file, CommandBuffer commands) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(commands.size());
+            for (int i = 0; i < commands.size(); i++) {
+                byte opcode = commands.getOpcode(i);
+                out.writeByte(opcode);
+                out.writeInt(commands.getR(i));
+                out.writeInt(commands.getC(i));
+                if (opcode == CommandBuffer.PAINT_SQUARE) {
+                    out.writeInt(commands.getS(i));
+                } else if (opcode == CommandBuffer.PAINT_LINE) {
+                    out.writeInt(commands.getR2(i));
+                    out.writeInt(commands.getC2(i));
+                }
+            }
+        }
+    }
+
+    private static CommandBuffer read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a solution file");
+            }
+            int count = in.readInt();
+            if (count < 0) {
+                throw new IOException("Invalid command count");
+            }
+            CommandBuffer commands = new CommandBuffer(Math.max(16, Math.min(count, 1 << 20)));
+            for (int i = 0; i < count; i++) {
+                byte opcode = in.readByte();
+                int r = in.readInt();
+                int c = in.readInt();
+                switch (opcode) {
+                    case CommandBuffer.PAINT_SQUARE:
+                        commands.addPaintSquare(r, c, in.readInt());
+                        break;
+                    case CommandBuffer.PAINT_LINE:
+                        commands.addPaintLine(r, c, in.readInt(), in.readInt());
+                        break;
+                    case CommandBuffer.ERASE_CELL:
+                        commands.addEraseCell(r, c);
+                        break;
+                    default:
+                        throw new IOException("Invalid opcode " + opcode);
+                }
+            }
+            if (in.read() != -1) {
+                throw new IOException("Trailing data");
+            }
+            return commands;
+        }
+    }
+}
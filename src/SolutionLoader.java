@@ -0,0 +1,172 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ *
+ * Loads a solution in the .out format into a <tt>CommandBuffer</tt>. The file is read in large
+ * chunks into a reused byte buffer and parsed byte by byte, so no strings or command objects are
+ * created, no matter how many commands there are.
+ *
+ */
+public class SolutionLoader {
+
+    private static final int CHUNK_SIZE = 1 << 20;
+
+    // Commands are short, so a longer line is a broken file
+    private static final int MAX_LINE_LENGTH = 256;
+
+    /**
+     * Loads the commands in the file into the buffer, which is cleared first. The coordinates are
+     * turned from the (row, column) order of the file into the (x, y) order of the command classes.
+     *
+     * @return the number of commands stated in the first line of the file, which isn't checked
+     * against the number of commands that were actually read.
+     * @throws IOException if the file can't be read or has a line that isn't a valid command.
+     */
+    public static int load(String filename, CommandBuffer commands) throws IOException {
+        commands.clear();
+        int[] operands = new int[4];
+        int statedCount = -1;
+        long lineNumber = 0;
+
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_SIZE);
+            boolean endOfFile = false;
+            while (!endOfFile) {
+                endOfFile = channel.read(buffer) < 0;
+                buffer.flip();
+
+                // Parse all complete lines (and the last line, even without a line break)
+                int lineStart = buffer.position();
+                for (int p = lineStart; p < buffer.limit() || (endOfFile && lineStart < buffer.limit()); p++) {
+                    if (p < buffer.limit() && buffer.get(p) != '\n') {
+                        continue;
+                    }
+                    lineNumber++;
+                    int lineEnd = p;
+                    if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') {
+                        lineEnd--;
+                    }
+                    if (statedCount < 0) {
+                        statedCount = parseCount(buffer, lineStart, lineEnd, lineNumber);
+                    } else if (lineEnd > lineStart) {
+                        parseCommand(buffer, lineStart, lineEnd, lineNumber, operands, commands);
+                    }
+                    lineStart = p + 1;
+                }
+
+                buffer.position(Math.min(lineStart, buffer.limit()));
+                if (!endOfFile && buffer.remaining() > MAX_LINE_LENGTH) {
+                    throw new IOException("Line " + (lineNumber + 1) + " is too long");
+                }
+                buffer.compact();
+            }
+        }
+
+        if (statedCount < 0) {
+            throw new IOException("Missing command count");
+        }
+        return statedCount;
+    }
+
+    private static int parseCount(ByteBuffer buffer, int from, int to, long lineNumber) throws IOException {
+        int end = skipSpaces(buffer, from, to);
+        int count = 0;
+        int digits = 0;
+        while (end < to && isDigit(buffer.get(end))) {
+            count = 10 * count + (buffer.get(end++) - '0');
+            if (++digits > 9) {
+                throw new IOException("Line " + lineNumber + ": command count is too large");
+            }
+        }
+        if (digits == 0 || skipSpaces(buffer, end, to) != to) {
+            throw new IOException("Line " + lineNumber + ": expected the command count");
+        }
+        return count;
+    }
+
+    private static void parseCommand(ByteBuffer buffer, int from, int to, long lineNumber, int[] operands, CommandBuffer commands) throws IOException {
+        int p = skipSpaces(buffer, from, to);
+        int opcodeEnd = p;
+        while (opcodeEnd < to && buffer.get(opcodeEnd) != ' ' && buffer.get(opcodeEnd) != '\t') {
+            opcodeEnd++;
+        }
+
+        int operandCount;
+        byte opcode;
+        if (matches(buffer, p, opcodeEnd, CommandFormat.PAINT_SQUARE_BYTES)) {
+            opcode = CommandBuffer.PAINT_SQUARE;
+            operandCount = 3;
+        } else if (matches(buffer, p, opcodeEnd, CommandFormat.PAINT_LINE_BYTES)) {
+            opcode = CommandBuffer.PAINT_LINE;
+            operandCount = 4;
+        } else if (matches(buffer, p, opcodeEnd, CommandFormat.ERASE_CELL_BYTES)) {
+            opcode = CommandBuffer.ERASE_CELL;
+            operandCount = 2;
+        } else {
+            throw new IOException("Line " + lineNumber + ": unknown command");
+        }
+
+        p = opcodeEnd;
+        for (int i = 0; i < operandCount; i++) {
+            p = skipSpaces(buffer, p, to);
+            int start = p;
+            boolean negative = p < to && buffer.get(p) == '-';
+            if (negative) {
+                p++;
+            }
+            long value = 0;
+            while (p < to && isDigit(buffer.get(p))) {
+                value = 10 * value + (buffer.get(p++) - '0');
+                if (value > Integer.MAX_VALUE) {
+                    throw new IOException("Line " + lineNumber + ": operand " + (i + 1) + " is too large");
+                }
+            }
+            if (p == start || (negative && p == start + 1)) {
+                throw new IOException("Line " + lineNumber + ": expected " + operandCount + " operands");
+            }
+            operands[i] = (int) (negative ? -value : value);
+        }
+        if (skipSpaces(buffer, p, to) != to) {
+            throw new IOException("Line " + lineNumber + ": too many operands");
+        }
+
+        // The file has rows before columns, the command classes have x (column) before y (row)
+        switch (opcode) {
+            case CommandBuffer.PAINT_SQUARE:
+                commands.addPaintSquare(operands[1], operands[0], operands[2]);
+                break;
+            case CommandBuffer.PAINT_LINE:
+                commands.addPaintLine(operands[1], operands[0], operands[3], operands[2]);
+                break;
+            default:
+                commands.addEraseCell(operands[1], operands[0]);
+        }
+    }
+
+    private static boolean matches(ByteBuffer buffer, int from, int to, byte[] expected) {
+        if (to - from != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (buffer.get(from + i) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int skipSpaces(ByteBuffer buffer, int from, int to) {
+        while (from < to && (buffer.get(from) == ' ' || buffer.get(from) == '\t')) {
+            from++;
+        }
+        return from;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+}
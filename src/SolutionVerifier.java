@@ -0,0 +1,214 @@
+import java.awt.Point;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ *
+ * Checks that a solution paints exactly the target picture. The commands are replayed onto the
+ * painted plane of the picture and the two planes are compared 64 cells at a time.
+ *
+ * Replaying is done in parallel in horizontal stripes of rows. Every stripe replays all commands
+ * in order, clipped to its own rows, so the result is the same as a serial replay (erases still
+ * come after the paints before them) and the stripes never write to the same words.
+ *
+ * Usage: {@code java SolutionVerifier <picture .in file> [solution .out file]}
+ *
+ */
+public class SolutionVerifier {
+
+    // Number of mismatching cells listed in the result
+    private static final int MAX_REPORTED_MISMATCHES = 10;
+
+    // Stripes per thread, so a stripe with many commands doesn't hold up the others
+    private static final int STRIPES_PER_THREAD = 4;
+
+    static class Result {
+        int commandCount;
+        int statedCommandCount;
+        long missingCells;  // target cells that are not painted
+        long extraCells;    // painted cells that are not target cells
+        final List<Point> mismatches = new ArrayList<>();
+        String error;
+
+        boolean isValid() {
+            return error == null && missingCells == 0 && extraCells == 0 && statedCommandCount == commandCount;
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: java SolutionVerifier <picture .in file> [solution .out file]");
+            System.exit(1);
+        }
+        String pictureFile = args[0];
+        String solutionFile = (args.length > 1) ? args[1] : args[0] + ".out";
+
+        long start = System.nanoTime();
+        PaintGrid picture = new PaintGrid(0, 0);
+        CommandBuffer commands = new CommandBuffer();
+        Result result = new Result();
+        try {
+            PaintSolver.readPicture(pictureFile, picture);
+            result.statedCommandCount = SolutionLoader.load(solutionFile, commands);
+            verify(picture, commands, result);
+        } catch (IOException e) {
+            result.error = "could not read (" + e.getMessage() + ")";
+        }
+        long millis = (System.nanoTime() - start) / 1000000;
+
+        printResult(solutionFile, result);
+        System.out.println("Verified in " + millis + " ms");
+        System.exit(result.isValid() ? 0 : 1);
+    }
+
+    /**
+     * Replays the commands onto the picture, which must have no paint yet, and compares the painted
+     * cells with the target cells.
+     *
+     * @return the result, with an error instead of cell counts if a command is outside the picture.
+     */
+    public static Result verify(PaintGrid picture, CommandBuffer commands) {
+        Result result = new Result();
+        result.statedCommandCount = commands.size();
+        verify(picture, commands, result);
+        return result;
+    }
+
+    private static void verify(PaintGrid picture, CommandBuffer commands, Result result) {
+        result.commandCount = commands.size();
+
+        for (int i = 0; i < commands.size(); i++) {
+            if (!isInside(commands, i, picture.getWidth(), picture.getHeight())) {
+                result.error = "command " + (i + 1) + " (" + commands.get(i) + ") is not a valid command in the picture";
+                return;
+            }
+        }
+
+        replay(picture, commands);
+        compare(picture, result);
+    }
+
+    private static boolean isInside(CommandBuffer commands, int i, int w, int h) {
+        int x = commands.getR(i);
+        int y = commands.getC(i);
+        switch (commands.getOpcode(i)) {
+            case CommandBuffer.PAINT_SQUARE:
+                int s = commands.getS(i);
+                return s >= 0 && x - s >= 0 && y - s >= 0 && x + s < w && y + s < h;
+            case CommandBuffer.PAINT_LINE:
+                int x2 = commands.getR2(i);
+                int y2 = commands.getC2(i);
+                return (x == x2 || y == y2) &&
+                        x >= 0 && y >= 0 && x < w && y < h &&
+                        x2 >= 0 && y2 >= 0 && x2 < w && y2 < h;
+            default:
+                return x >= 0 && y >= 0 && x < w && y < h;
+        }
+    }
+
+    //
+    // Replay
+    //
+
+    private static void replay(PaintGrid picture, CommandBuffer commands) {
+        int h = picture.getHeight();
+        int stripeCount = Math.max(1, Math.min(h, STRIPES_PER_THREAD * ForkJoinPool.getCommonPoolParallelism()));
+        IntStream.range(0, stripeCount).parallel().forEach(stripe -> {
+            int fromY = (int) ((long) h * stripe / stripeCount);
+            int toY = (int) ((long) h * (stripe + 1) / stripeCount) - 1;
+            replayStripe(picture, commands, fromY, toY);
+        });
+    }
+
+    private static void replayStripe(PaintGrid picture, CommandBuffer commands, int fromY, int toY) {
+        for (int i = 0; i < commands.size(); i++) {
+            int x = commands.getR(i);
+            int y = commands.getC(i);
+            switch (commands.getOpcode(i)) {
+                case CommandBuffer.PAINT_SQUARE: {
+                    int s = commands.getS(i);
+                    int top = Math.max(fromY, y - s);
+                    int bottom = Math.min(toY, y + s);
+                    if (top <= bottom) {
+                        picture.paintRect(x - s, top, x + s, bottom);
+                    }
+                    break;
+                }
+                case CommandBuffer.PAINT_LINE: {
+                    int x2 = commands.getR2(i);
+                    int y2 = commands.getC2(i);
+                    if (y == y2) {
+                        if (y >= fromY && y <= toY) {
+                            picture.paintRow(y, Math.min(x, x2), Math.max(x, x2));
+                        }
+                    } else {
+                        int top = Math.max(fromY, Math.min(y, y2));
+                        int bottom = Math.min(toY, Math.max(y, y2));
+                        if (top <= bottom) {
+                            picture.paintColumn(x, top, bottom);
+                        }
+                    }
+                    break;
+                }
+                default:
+                    if (y >= fromY && y <= toY) {
+                        picture.eraseCell(x, y);
+                    }
+            }
+        }
+    }
+
+    //
+    // Comparison
+    //
+
+    private static void compare(PaintGrid picture, Result result) {
+        int h = picture.getHeight();
+        int wordsPerRow = picture.getWordsPerRow();
+
+        long[] missing = new long[h];
+        long[] extra = new long[h];
+        IntStream.range(0, h).parallel().forEach(y -> {
+            for (int word = 0; word < wordsPerRow; word++) {
+                long target = picture.getTargetWord(y, word);
+                long painted = picture.getPaintedWord(y, word);
+                missing[y] += Long.bitCount(target & ~painted);
+                extra[y] += Long.bitCount(painted & ~target);
+            }
+        });
+
+        for (int y = 0; y < h; y++) {
+            result.missingCells += missing[y];
+            result.extraCells += extra[y];
+
+            for (int word = 0; word < wordsPerRow && missing[y] + extra[y] > 0 && result.mismatches.size() < MAX_REPORTED_MISMATCHES; word++) {
+                long diff = picture.getTargetWord(y, word) ^ picture.getPaintedWord(y, word);
+                while (diff != 0 && result.mismatches.size() < MAX_REPORTED_MISMATCHES) {
+                    result.mismatches.add(new Point(64 * word + Long.numberOfTrailingZeros(diff), y));
+                    diff &= diff - 1;
+                }
+            }
+        }
+    }
+
+    public static void printResult(String solutionFile, Result result) {
+        if (result.error != null) {
+            System.out.println(solutionFile + ": INVALID, " + result.error);
+            return;
+        }
+        System.out.println(solutionFile + ": " + (result.isValid() ? "OK" : "INVALID") + ", " + result.commandCount + " commands");
+        if (result.statedCommandCount != result.commandCount) {
+            System.out.println(" - the file states " + result.statedCommandCount + " commands");
+        }
+        if (result.missingCells > 0 || result.extraCells > 0) {
+            System.out.println(" - " + result.missingCells + " cells not painted, " + result.extraCells + " cells painted that shouldn't be");
+            for (Point cell : result.mismatches) {
+                // Same (row, column) order as the files
+                System.out.println("   at " + cell.y + " " + cell.x);
+            }
+        }
+    }
+}
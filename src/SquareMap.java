@@ -0,0 +1,170 @@
+import java.util.Arrays;
+
+/**
+ *
+ * The largest square that can be centred at each cell of a <tt>PaintGrid</tt> without covering a
+ * DONT_PAINT cell or leaving the grid. A square of size s has the side 2*s + 1.
+ *
+ * The sizes are found with a chessboard distance transform (one forward and one backward raster
+ * pass), since the largest square around a cell is one less than its chessboard distance to the
+ * nearest DONT_PAINT cell or the border. Centres that fit a square of size 1 or larger are then
+ * bucketed by size. Inside a bucket the centres are in column-major order, which is the order the
+ * solver has always visited them in.
+ *
+ */
+public class SquareMap {
+
+    private int w, h;
+
+    // Largest square size at each cell (row-major), -1 for DONT_PAINT cells
+    private short[] sizes = new short[0];
+    private int maxSize;
+
+    // Centres (as column-major cell indices x*h + y) grouped by size; bucket s is
+    // bucketCells[bucketStart[s]] until bucketCells[bucketStart[s+1]]
+    private int[] bucketStart = new int[0];
+    private int[] bucketCells = new int[0];
+    private int centreCount;
+
+    public SquareMap() {
+    }
+
+    public SquareMap(PaintGrid grid) {
+        compute(grid);
+    }
+
+    /**
+     * (Re)computes the map for the grid, reusing the arrays of a previous computation if they are
+     * large enough.
+     */
+    public void compute(PaintGrid grid) {
+        this.w = grid.getWidth();
+        this.h = grid.getHeight();
+        if (sizes.length < w * h) {
+            sizes = new short[w * h];
+        }
+
+        //
+        // Chessboard distance to the nearest DONT_PAINT cell, counting everything outside the grid
+        //
+
+        // Forward pass (left, up-left, up, up-right)
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                if (grid.isDontPaint(x, y)) {
+                    sizes[y * w + x] = 0;
+                    continue;
+                }
+                int d = Math.min(distanceAt(x - 1, y), distanceAt(x - 1, y - 1));
+                d = Math.min(d, Math.min(distanceAt(x, y - 1), distanceAt(x + 1, y - 1)));
+                sizes[y * w + x] = (short) (d + 1);
+            }
+        }
+
+        // Backward pass (right, down-right, down, down-left)
+        for (int y = h - 1; y >= 0; y--) {
+            for (int x = w - 1; x >= 0; x--) {
+                int d = sizes[y * w + x];
+                if (d == 0) {
+                    continue;
+                }
+                d = Math.min(d, distanceAt(x + 1, y) + 1);
+                d = Math.min(d, distanceAt(x + 1, y + 1) + 1);
+                d = Math.min(d, distanceAt(x, y + 1) + 1);
+                d = Math.min(d, distanceAt(x - 1, y + 1) + 1);
+                sizes[y * w + x] = (short) d;
+            }
+        }
+
+        // Distance 1 means only the cell itself fits (size 0)
+        maxSize = -1;
+        for (int i = 0; i < w * h; i++) {
+            sizes[i] -= 1;
+            maxSize = Math.max(maxSize, sizes[i]);
+        }
+
+        //
+        // Bucket the centres by size (counting sort, stable in column-major order)
+        //
+
+        int bucketCount = Math.max(maxSize, 0) + 2;
+        if (bucketStart.length < bucketCount) {
+            bucketStart = new int[bucketCount];
+        } else {
+            Arrays.fill(bucketStart, 0, bucketCount, 0);
+        }
+        for (int i = 0; i < w * h; i++) {
+            if (sizes[i] >= 1) {
+                bucketStart[sizes[i] + 1]++;
+            }
+        }
+        for (int s = 1; s < bucketCount; s++) {
+            bucketStart[s] += bucketStart[s - 1];
+        }
+
+        centreCount = bucketStart[bucketCount - 1];
+        if (bucketCells.length < centreCount) {
+            bucketCells = new int[centreCount];
+        }
+        int[] next = Arrays.copyOf(bucketStart, bucketCount);
+        for (int x = 0; x < w; x++) {
+            for (int y = 0; y < h; y++) {
+                int size = sizes[y * w + x];
+                if (size >= 1) {
+                    bucketCells[next[size]++] = x * h + y;
+                }
+            }
+        }
+    }
+
+    private int distanceAt(int x, int y) {
+        if (x < 0 || y < 0 || x >= w || y >= h) {
+            return 0;
+        }
+        return sizes[y * w + x];
+    }
+
+    /**
+     * Returns the largest square size centred at the cell, or -1 if the cell is DONT_PAINT.
+     */
+    public int getSize(int x, int y) {
+        return sizes[y * w + x];
+    }
+
+    /**
+     * Returns the largest square size in the whole grid, or -1 if there are only DONT_PAINT cells.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the number of centres that fit a square of size 1 or larger.
+     */
+    public int getCentreCount() {
+        return centreCount;
+    }
+
+    public int bucketStart(int size) {
+        return bucketStart[size];
+    }
+
+    public int bucketEnd(int size) {
+        return bucketStart[size + 1];
+    }
+
+    /**
+     * Returns the centre at position i of the buckets as a column-major cell index (x*h + y).
+     */
+    public int centreAt(int i) {
+        return bucketCells[i];
+    }
+
+    public int centreX(int cell) {
+        return cell / h;
+    }
+
+    public int centreY(int cell) {
+        return cell % h;
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ *
+ * A summed-area table (2D prefix sum) over the DONT_PAINT cells of a <tt>PaintGrid</tt>. After the
+ * table is built, the number of DONT_PAINT cells inside any rectangle can be found with four lookups.
+ *
+ */
+public class SummedAreaTable {
+
+    private final int w, h;
+
+    // sums[(y+1)*(w+1) + (x+1)] is the number of DONT_PAINT cells in [0..x] x [0..y]
+    private final int[] sums;
+
+    public SummedAreaTable(PaintGrid grid) {
+        this.w = grid.getWidth();
+        this.h = grid.getHeight();
+        this.sums = new int[(w + 1) * (h + 1)];
+
+        int stride = w + 1;
+        for (int y = 0; y < h; y++) {
+            int rowSum = 0;
+            int row = (y + 1) * stride;
+            for (int x = 0; x < w; x++) {
+                if (grid.isDontPaint(x, y)) {
+                    rowSum++;
+                }
+                sums[row + x + 1] = sums[row - stride + x + 1] + rowSum;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of DONT_PAINT cells in the rectangle spanned by the two (inclusive) corners.
+     * The rectangle must lie inside the grid.
+     */
+    public int count(int fromX, int fromY, int toX, int toY) {
+        int stride = w + 1;
+        int top = fromY * stride;
+        int bottom = (toY + 1) * stride;
+        return sums[bottom + toX + 1] - sums[top + toX + 1] - sums[bottom + fromX] + sums[top + fromX];
+    }
+
+    /**
+     * Returns true if a square with the given centre and size (side 2*s + 1) fits inside the grid
+     * without covering any DONT_PAINT cell.
+     */
+    public boolean isSquarePossible(int x, int y, int s) {
+        if (x - s < 0 || y - s < 0 || x + s >= w || y + s >= h) {
+            return false;
+        }
+        return count(x - s, y - s, x + s, y + s) == 0;
+    }
+}
@@ -0,0 +1,282 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ *
+ * Solves big pictures by splitting them into tiles that are solved in parallel on a
+ * <tt>ForkJoinPool</tt>, and stitching the tile solutions back together.
+ *
+ * Every tile is solved with the greedy strategies of <tt>Painter</tt> (the smaller of square + line
+ * and line only) on the tile plus a margin around it, so that squares and lines near the border of
+ * the tile are found as if the picture went on. A command is kept by the tile its anchor (the
+ * centre of a square or the first cell of a line) lies in, so a command found by two tiles is
+ * only kept once. Since all commands only paint target cells, the kept commands are a valid
+ * partial solution, and stitching then:
+ *
+ *  - paints the target cells that no kept command covers (they were covered by commands that
+ *    another tile didn't keep) with row lines,
+ *  - merges lines in the same row or column that touch or overlap, which joins the lines that
+ *    continue over a seam. Lines are packed with 21 bits per coordinate for this, so pictures
+ *    wider or higher than that are left unmerged.
+ *
+ * Usage: {@code java TiledSolver <picture .in file> [tile size] [threads]}
+ *
+ */
+public class TiledSolver {
+
+    public static final int DEFAULT_TILE_SIZE = 512;
+    public static final int DEFAULT_MARGIN = 32;
+
+    // Largest width or height whose coordinates fit the 21 bit fields of packLine
+    private static final int MAX_MERGE_SIZE = 1 << 21;
+
+    private final ForkJoinPool pool;
+    private final int tileSize;
+    private final int margin;
+
+    // One set of tile buffers per worker thread
+    private final ThreadLocal<TileWorker> workers = ThreadLocal.withInitial(TileWorker::new);
+
+    private static class TileWorker {
+        final PaintGrid tile = new PaintGrid(0, 0);
+        final SquareMap squareMap = new SquareMap();
+        final Painter squareLinePainter = new Painter();
+        final Painter linePainter = new Painter();
+    }
+
+    public TiledSolver() {
+        this(ForkJoinPool.commonPool(), DEFAULT_TILE_SIZE, DEFAULT_MARGIN);
+    }
+
+    public TiledSolver(ForkJoinPool pool, int tileSize, int margin) {
+        if (pool == null) {
+            throw new NullPointerException();
+        }
+        if (tileSize <= 0 || margin < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.pool = pool;
+        this.tileSize = tileSize;
+        this.margin = margin;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: java TiledSolver <picture .in file> [tile size] [threads]");
+            System.exit(1);
+        }
+        int tileSize = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_TILE_SIZE;
+        int threads = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        PaintGrid picture = new PaintGrid(0, 0);
+        try {
+            PaintSolver.readPicture(args[0], picture);
+        } catch (IOException e) {
+            System.out.println("Could not read input file!");
+            System.exit(1);
+        }
+
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        CommandBuffer commands = new TiledSolver(pool, tileSize, DEFAULT_MARGIN).solve(picture);
+        pool.shutdown();
+        long millis = (System.nanoTime() - start) / 1000000;
+
+        System.out.println(args[0] + ": " + commands.size() + " commands in " + millis + " ms");
+        PracticeProblem.writeData(args[0] + ".out", commands);
+    }
+
+    /**
+     * Solves the picture (which is not painted on) and returns the commands.
+     */
+    public CommandBuffer solve(PaintGrid picture) {
+        int tilesX = (picture.getWidth() + tileSize - 1) / tileSize;
+        int tilesY = (picture.getHeight() + tileSize - 1) / tileSize;
+        CommandBuffer[] tileCommands = new CommandBuffer[tilesX * tilesY];
+
+        pool.invoke(new TileTask(picture, tileCommands, tilesX, 0, 0, tilesX, tilesY));
+
+        CommandBuffer commands = new CommandBuffer();
+        for (CommandBuffer buffer : tileCommands) {
+            commands.addAll(buffer);
+        }
+        paintUncovered(picture, commands);
+        if (picture.getWidth() > MAX_MERGE_SIZE || picture.getHeight() > MAX_MERGE_SIZE) {
+            return commands;
+        }
+        return mergeLines(commands);
+    }
+
+    //
+    // Tiles
+    //
+
+    // Solves the tiles [fromTileX, toTileX) x [fromTileY, toTileY), splitting the range in two
+    // until it's a single tile
+    private class TileTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final PaintGrid picture;
+        private final CommandBuffer[] tileCommands;
+        private final int tilesX;
+        private final int fromTileX, fromTileY, toTileX, toTileY;
+
+        TileTask(PaintGrid picture, CommandBuffer[] tileCommands, int tilesX, int fromTileX, int fromTileY, int toTileX, int toTileY) {
+            this.picture = picture;
+            this.tileCommands = tileCommands;
+            this.tilesX = tilesX;
+            this.fromTileX = fromTileX;
+            this.fromTileY = fromTileY;
+            this.toTileX = toTileX;
+            this.toTileY = toTileY;
+        }
+
+        @Override
+        protected void compute() {
+            int countX = toTileX - fromTileX;
+            int countY = toTileY - fromTileY;
+            if (countX <= 0 || countY <= 0) {
+                return;
+            }
+            if (countX == 1 && countY == 1) {
+                tileCommands[fromTileY * tilesX + fromTileX] = solveTile(picture, fromTileX, fromTileY);
+            } else if (countX >= countY) {
+                int middle = fromTileX + countX / 2;
+                invokeAll(new TileTask(picture, tileCommands, tilesX, fromTileX, fromTileY, middle, toTileY),
+                        new TileTask(picture, tileCommands, tilesX, middle, fromTileY, toTileX, toTileY));
+            } else {
+                int middle = fromTileY + countY / 2;
+                invokeAll(new TileTask(picture, tileCommands, tilesX, fromTileX, fromTileY, toTileX, middle),
+                        new TileTask(picture, tileCommands, tilesX, fromTileX, middle, toTileX, toTileY));
+            }
+        }
+    }
+
+    private CommandBuffer solveTile(PaintGrid picture, int tileX, int tileY) {
+        // The core of the tile, and the core plus the margin that is actually solved
+        int coreX = tileX * tileSize;
+        int coreY = tileY * tileSize;
+        int coreToX = Math.min(picture.getWidth(), coreX + tileSize) - 1;
+        int coreToY = Math.min(picture.getHeight(), coreY + tileSize) - 1;
+        int fromX = Math.max(0, coreX - margin);
+        int fromY = Math.max(0, coreY - margin);
+        int toX = Math.min(picture.getWidth() - 1, coreToX + margin);
+        int toY = Math.min(picture.getHeight() - 1, coreToY + margin);
+
+        TileWorker worker = workers.get();
+        worker.tile.copyRegionFrom(picture, fromX, fromY, toX - fromX + 1, toY - fromY + 1);
+
+        worker.squareLinePainter.load(worker.tile);
+        worker.squareMap.compute(worker.tile);
+        worker.squareLinePainter.fillSquareGroups(worker.squareMap);
+        worker.squareLinePainter.findAndFillLines();
+        worker.squareLinePainter.fillCells();
+
+        worker.linePainter.load(worker.tile);
+        worker.linePainter.findAndFillLines();
+        worker.linePainter.fillCells();
+
+        CommandBuffer solution = worker.squareLinePainter.getCommands();
+        if (worker.linePainter.getCommands().size() < solution.size()) {
+            solution = worker.linePainter.getCommands();
+        }
+
+        // Keep the commands anchored in the core, moved to picture coordinates
+        CommandBuffer kept = new CommandBuffer();
+        for (int i = 0; i < solution.size(); i++) {
+            int x = solution.getR(i) + fromX;
+            int y = solution.getC(i) + fromY;
+            if (x < coreX || x > coreToX || y < coreY || y > coreToY) {
+                continue;
+            }
+            if (solution.getOpcode(i) == CommandBuffer.PAINT_SQUARE) {
+                kept.addPaintSquare(x, y, solution.getS(i));
+            } else {
+                kept.addPaintLine(x, y, solution.getR2(i) + fromX, solution.getC2(i) + fromY);
+            }
+        }
+        return kept;
+    }
+
+    //
+    // Stitching
+    //
+
+    private static void paintUncovered(PaintGrid picture, CommandBuffer commands) {
+        PaintGrid painted = picture.copy();
+        painted.clearPainted();
+        commands.paint(painted);
+
+        for (int y = 0; y < painted.getHeight(); y++) {
+            for (int x = 0; x < painted.getWidth(); ) {
+                if (!painted.isDoPaint(x, y)) {
+                    x++;
+                    continue;
+                }
+                int start = x;
+                while (x < painted.getWidth() && painted.isDoPaint(x, y)) x++;
+                if (x - start == 1) {
+                    commands.addPaintSquare(start, y, 0);
+                } else {
+                    commands.addPaintLine(start, y, x - 1, y);
+                }
+            }
+        }
+    }
+
+    // Joins lines (and single cells, as row lines) in the same row or column that touch or
+    // overlap. Such lines only cover target cells, so the joined line does too.
+    private static CommandBuffer mergeLines(CommandBuffer commands) {
+        // Lines packed as: 1 bit vertical, 21 bits row/column, 21 bits start, 21 bits end
+        long[] lines = new long[commands.size()];
+        int lineCount = 0;
+        CommandBuffer merged = new CommandBuffer(commands.size());
+        for (int i = 0; i < commands.size(); i++) {
+            int x = commands.getR(i);
+            int y = commands.getC(i);
+            if (commands.getOpcode(i) == CommandBuffer.PAINT_LINE) {
+                int x2 = commands.getR2(i);
+                int y2 = commands.getC2(i);
+                if (y == y2) {
+                    lines[lineCount++] = packLine(false, y, Math.min(x, x2), Math.max(x, x2));
+                } else {
+                    lines[lineCount++] = packLine(true, x, Math.min(y, y2), Math.max(y, y2));
+                }
+            } else if (commands.getOpcode(i) == CommandBuffer.PAINT_SQUARE && commands.getS(i) == 0) {
+                lines[lineCount++] = packLine(false, y, x, x);
+            } else {
+                merged.addPaintSquare(x, y, commands.getS(i));
+            }
+        }
+
+        Arrays.sort(lines, 0, lineCount);
+        for (int i = 0; i < lineCount; ) {
+            long first = lines[i];
+            int start = (int) (first >>> 21) & 0x1FFFFF;
+            int end = (int) first & 0x1FFFFF;
+            int j = i + 1;
+            while (j < lineCount && (lines[j] >>> 42) == (first >>> 42) && ((int) (lines[j] >>> 21) & 0x1FFFFF) <= end + 1) {
+                end = Math.max(end, (int) lines[j] & 0x1FFFFF);
+                j++;
+            }
+
+            boolean vertical = (first >>> 63) != 0;
+            int line = (int) (first >>> 42) & 0x1FFFFF;
+            if (start == end) {
+                merged.addPaintSquare(vertical ? line : start, vertical ? start : line, 0);
+            } else if (vertical) {
+                merged.addPaintLine(line, start, line, end);
+            } else {
+                merged.addPaintLine(start, line, end, line);
+            }
+            i = j;
+        }
+        return merged;
+    }
+
+    private static long packLine(boolean vertical, int line, int start, int end) {
+        return ((vertical ? 1L : 0L) << 63) | ((long) line << 42) | ((long) start << 21) | end;
+    }
+}
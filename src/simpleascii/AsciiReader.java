@@ -3,9 +3,13 @@ package simpleascii;
 import com.sun.istack.internal.NotNull;
 
 import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -17,8 +21,14 @@ import java.util.stream.Stream;
  *
  * <tt>AsciiReader</tt> is an Ascii text reader with some simple line parsing capabilities.
  *
+ * The file can either be read into memory all at once with {@code performRead()}, or be streamed
+ * with {@code performStreamingRead()}, in which case only a small look-ahead window of lines is
+ * kept in memory.
+ *
  */
-public class AsciiReader implements Iterator<LineParser> {
+public class AsciiReader implements Iterator<LineParser>, Closeable {
+
+    private static final int STREAM_BUFFER_SIZE = 1 << 16;
 
     private @NotNull File inputFile;
 
@@ -26,6 +36,10 @@ public class AsciiReader implements Iterator<LineParser> {
     private List<String> lines;
     private int iteratorIndex = 0;
 
+    private boolean isStreaming = false;
+    private BufferedReader streamReader;
+    private ArrayDeque<String> lookAhead;
+
     /**
      *
      * Constructs a <tt>AsciiReader</tt> reading and parsing from the passed in file. The method
@@ -79,6 +93,52 @@ public class AsciiReader implements Iterator<LineParser> {
         this.isRead = true;
     }
 
+    /**
+     *
+     * Opens the file for streaming. Instead of reading the whole file into memory, lines are read
+     * lazily as they are requested, so memory use is bounded by the longest line and the look-ahead
+     * window. The window only grows as large as the biggest count passed to {@code hasNextLines(count)}
+     * or {@code nextLines(count)}.
+     *
+     * The file is closed when the last line has been read, or when {@code close()} is called.
+     *
+     * @throws IOException if the file doesn't exist or is unreadable for whatever reason.
+     *
+     */
+    public void performStreamingRead() throws IOException {
+        this.streamReader = new BufferedReader(new FileReader(inputFile), STREAM_BUFFER_SIZE);
+        this.lookAhead = new ArrayDeque<>();
+        this.isStreaming = true;
+        this.isRead = true;
+    }
+
+    /**
+     *
+     * Reads lines from the stream into the look-ahead window until it holds count lines or the end
+     * of the file is reached.
+     *
+     * @param count number of lines wanted in the window.
+     * @throws UncheckedIOException if the file can't be read.
+     * @return true if the window holds count lines.
+     *
+     */
+    private boolean fillLookAhead(int count) {
+        while (lookAhead.size() < count && streamReader != null) {
+            String line;
+            try {
+                line = streamReader.readLine();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (line == null) {
+                close();
+                break;
+            }
+            lookAhead.add(line);
+        }
+        return lookAhead.size() >= count;
+    }
+
     /**
      *
      * Returns true if there is a next line to get.
@@ -102,6 +162,9 @@ public class AsciiReader implements Iterator<LineParser> {
         if (count <= 0) {
             throw new IllegalArgumentException();
         }
+        if (isStreaming()) {
+            return fillLookAhead(count);
+        }
         return isRead() && ((iteratorIndex + count - 1) < this.lines.size());
     }
 
@@ -116,6 +179,9 @@ public class AsciiReader implements Iterator<LineParser> {
         if (!isRead()) {
             return null;
         }
+        if (isStreaming()) {
+            return fillLookAhead(1) ? new LineParser(lookAhead.poll()) : null;
+        }
         if (hasNext()) {
             String line = this.lines.get(iteratorIndex);
             iteratorIndex += 1;
@@ -137,6 +203,16 @@ public class AsciiReader implements Iterator<LineParser> {
         if (count <= 0) {
             throw new IllegalArgumentException();
         }
+        if (isStreaming()) {
+            if (!fillLookAhead(count)) {
+                return null;
+            }
+            List<LineParser> nextLines = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                nextLines.add(new LineParser(lookAhead.poll()));
+            }
+            return nextLines;
+        }
         if (hasNextLines(count)) {
             List<String> nextLines = this.lines.subList(iteratorIndex, iteratorIndex + count);
             iteratorIndex += count;
@@ -160,6 +236,38 @@ public class AsciiReader implements Iterator<LineParser> {
         return isRead;
     }
 
+    /**
+     *
+     * Returns true if this reader was opened with {@code performStreamingRead()}.
+     *
+     * @return true if lines are streamed from the file.
+     *
+     */
+    public boolean isStreaming() {
+        return isStreaming;
+    }
+
+    /**
+     *
+     * Closes the underlying file of a streaming reader. Lines already in the look-ahead window can
+     * still be read. Does nothing for a reader that was read with {@code performRead()}.
+     *
+     * @throws UncheckedIOException if the file can't be closed.
+     *
+     */
+    @Override
+    public void close() {
+        if (streamReader != null) {
+            try {
+                streamReader.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                streamReader = null;
+            }
+        }
+    }
+
     /**
      *
      * Implemented for Iterator support. Is equivalent to {@code hasNextLine()}.
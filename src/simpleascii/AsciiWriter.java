@@ -3,9 +3,14 @@ package simpleascii;
 import com.sun.istack.internal.NotNull;
 
 import java.io.BufferedWriter;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.text.DecimalFormat;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -20,8 +25,15 @@ import java.util.Collections;
  * After this is called, this <tt>AsciiWriter</tt> instance is closed and <b>can no longer
  * perform any more writes</b>.
  *
+ * For big outputs the writer can instead be put in streaming mode with {@code performStreamingWrite()},
+ * in which case everything written is passed on to the file in chunks of a fixed size, so the
+ * whole output is never held in memory. {@code performWrite()} then writes what's left and closes
+ * the file.
+ *
  */
-public class AsciiWriter {
+public class AsciiWriter implements Appendable, Closeable {
+
+    private static final int DEFAULT_FLUSH_THRESHOLD = 1 << 16;
 
     private static final String WHITESPACE_CHARACTER = " ";
     private static final String TAB_CHARACTER = "\t";
@@ -32,6 +44,10 @@ public class AsciiWriter {
     private @NotNull StringBuilder outputString = new StringBuilder();
     private @NotNull File outputFile;
 
+    private boolean isStreaming = false;
+    private FileChannel streamChannel;
+    private ByteBuffer streamBuffer;
+
     /**
      *
      * Constructs a <tt>AsciiWriter</tt> from a supplied output file.
@@ -81,6 +97,15 @@ public class AsciiWriter {
         if (isClosed()) {
             return;
         }
+        if (isStreaming()) {
+            try {
+                flushStreamBuffer();
+            } finally {
+                streamChannel.close();
+                this.isClosed = true;
+            }
+            return;
+        }
         // Construct the BufferedWriter with append mode set to false (it will overwrite)
         BufferedWriter fileWriter = new BufferedWriter(new FileWriter(outputFile, false));
         fileWriter.write(outputString.toString());
@@ -88,6 +113,50 @@ public class AsciiWriter {
         this.isClosed = true;
     }
 
+    /**
+     *
+     * Opens the file for streaming with the default flush threshold of 64 KB. See
+     * {@code performStreamingWrite(int)}.
+     *
+     * @throws IOException if file cannot be opened for writing.
+     *
+     */
+    public void performStreamingWrite() throws IOException {
+        performStreamingWrite(DEFAULT_FLUSH_THRESHOLD);
+    }
+
+    /**
+     *
+     * Opens the file for streaming. Anything already written is passed on to the file, and from
+     * now on written text is kept in a buffer that is written to the file every time it reaches
+     * flushThreshold characters. Memory use is therefore bounded by the threshold instead of the
+     * size of the output. The file is finished and closed with {@code performWrite()} (or
+     * {@code close()}), just like in the normal mode.
+     *
+     * If a write to the file fails while streaming, the <tt>IOException</tt> is rethrown from the
+     * write method as an <tt>UncheckedIOException</tt>.
+     *
+     * @param flushThreshold number of characters to buffer before writing. Must be greater than 0.
+     * @throws IOException if file cannot be opened for writing.
+     *
+     */
+    public void performStreamingWrite(int flushThreshold) throws IOException {
+        if (flushThreshold <= 0) {
+            throw new IllegalArgumentException();
+        }
+        if (isClosed() || isStreaming()) {
+            return;
+        }
+        this.streamChannel = FileChannel.open(outputFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        this.streamBuffer = ByteBuffer.allocateDirect(flushThreshold);
+        this.isStreaming = true;
+
+        String writtenSoFar = outputString.toString();
+        this.outputString = new StringBuilder();
+        write(writtenSoFar);
+    }
+
     /**
      *
      * Writes a string to the file.
@@ -100,7 +169,77 @@ public class AsciiWriter {
         if (isClosed()) {
             return this;
         }
-        outputString.append(string);
+        append(string);
+        return this;
+    }
+
+    /**
+     *
+     * Writes a single character to the file. Doesn't create any strings, so it can be used to
+     * write big outputs without allocating anything per write.
+     *
+     * @param c character to write.
+     * @return this instance.
+     *
+     */
+    @Override
+    public AsciiWriter append(char c) {
+        if (isClosed()) {
+            return this;
+        }
+        if (isStreaming()) {
+            if (!streamBuffer.hasRemaining()) {
+                flushStreamBufferUnchecked();
+            }
+            // Ascii only, so every char is a single byte
+            streamBuffer.put((byte) c);
+            return this;
+        }
+        outputString.append(c);
+        return this;
+    }
+
+    /**
+     *
+     * Writes a character sequence to the file.
+     *
+     * @param sequence characters to write. "null" is written if it is null.
+     * @return this instance.
+     *
+     */
+    @Override
+    public AsciiWriter append(CharSequence sequence) {
+        if (sequence == null) {
+            sequence = "null";
+        }
+        return append(sequence, 0, sequence.length());
+    }
+
+    /**
+     *
+     * Writes the characters from start (inclusive) to end (exclusive) of a character sequence to the file.
+     *
+     * @param sequence characters to write. "null" is used if it is null.
+     * @param start index of the first character to write.
+     * @param end index after the last character to write.
+     * @return this instance.
+     *
+     */
+    @Override
+    public AsciiWriter append(CharSequence sequence, int start, int end) {
+        if (sequence == null) {
+            sequence = "null";
+        }
+        if (isClosed()) {
+            return this;
+        }
+        if (isStreaming()) {
+            for (int i = start; i < end; i++) {
+                append(sequence.charAt(i));
+            }
+            return this;
+        }
+        outputString.append(sequence, start, end);
         return this;
     }
 
@@ -273,4 +412,45 @@ public class AsciiWriter {
     public boolean isClosed() {
         return isClosed;
     }
+
+    /**
+     *
+     * Check if this <tt>AsciiWriter</tt> instance was put in streaming mode with
+     * {@code performStreamingWrite()}.
+     *
+     * @return true if written text is streamed to the file.
+     *
+     */
+    public boolean isStreaming() {
+        return isStreaming;
+    }
+
+    /**
+     *
+     * Same as {@code performWrite()}, so that a streaming writer can be used in a try-with-resources
+     * statement and always gets its file closed.
+     *
+     * @throws IOException if file cannot be written to for some reason.
+     *
+     */
+    @Override
+    public void close() throws IOException {
+        performWrite();
+    }
+
+    private void flushStreamBuffer() throws IOException {
+        streamBuffer.flip();
+        while (streamBuffer.hasRemaining()) {
+            streamChannel.write(streamBuffer);
+        }
+        streamBuffer.clear();
+    }
+
+    private void flushStreamBufferUnchecked() {
+        try {
+            flushStreamBuffer();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 }
@@ -5,7 +5,10 @@ import com.sun.istack.internal.NotNull;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
@@ -14,10 +17,25 @@ import java.util.stream.Collectors;
  *
  * A <tt>LineParser</tt> is a parser for simple one liners.
  *
+ * Splitting by a literal delimiter, by whitespace or into single characters doesn't use regular
+ * expressions. Such splits only record where each section starts and ends in the line, and the
+ * section strings are created when they are asked for. Other delimiters are split with a compiled
+ * <tt>Pattern</tt> that is cached between lines.
+ *
  */
 public class LineParser {
 
+    private static final String REGEX_META_CHARACTERS = ".$|()[]{}^?*+\\";
+
+    // Don't let a stream of generated regexes grow the cache without bound
+    private static final int MAX_CACHED_PATTERNS = 64;
+    private static final Map<String, Pattern> patternCache = new ConcurrentHashMap<>();
+
     @NotNull private String line;
+
+    // Sections are either stored as (start, end) offsets into the line, or as strings
+    private int[] sectionBounds;
+    private int sectionBoundsCount;
     private List<String> sections;
 
     /**
@@ -59,7 +77,18 @@ public class LineParser {
      *
      */
     public LineParser splitBy(String regex) {
-        this.sections = Arrays.asList(line.split(regex));
+        invalidatePreviousSections();
+        if (regex.isEmpty()) {
+            splitIntoCharacters();
+        } else if (regex.equals("\\s+")) {
+            splitByRuns(true);
+        } else if (regex.equals(" +")) {
+            splitByRuns(false);
+        } else if (isLiteral(regex)) {
+            splitByLiteral(regex);
+        } else {
+            this.sections = Arrays.asList(compiledPattern(regex).split(line));
+        }
         return this;
     }
 
@@ -72,6 +101,19 @@ public class LineParser {
      *
      */
     public LineParser removeEmptySections() {
+        if (sectionBounds != null) {
+            int count = 0;
+            for (int i = 0; i < sectionBoundsCount; i++) {
+                if (sectionBounds[2 * i + 1] > sectionBounds[2 * i]) {
+                    sectionBounds[2 * count] = sectionBounds[2 * i];
+                    sectionBounds[2 * count + 1] = sectionBounds[2 * i + 1];
+                    count++;
+                }
+            }
+            sectionBoundsCount = count;
+            return this;
+        }
+        createSectionFromLineIfRequired();
         this.sections = this.sections.stream()
                 .filter(s -> !s.isEmpty())
                 .collect(Collectors.toList());
@@ -90,7 +132,19 @@ public class LineParser {
      *
      */
     public LineParser defaultSectionSplit() {
-        trimWhitespace().splitBy(" ").removeEmptySections();
+        // Same result as splitting by " " and removing the empty sections, in a single pass
+        trimWhitespace();
+        int end = line.length();
+        for (int i = 0; i < end; ) {
+            while (i < end && line.charAt(i) == ' ') i++;
+            if (i == end) break;
+            int start = i;
+            while (i < end && line.charAt(i) != ' ') i++;
+            addSectionBounds(start, i);
+        }
+        if (sectionBounds == null) {
+            sectionBounds = new int[0];
+        }
         return this;
     }
 
@@ -103,6 +157,9 @@ public class LineParser {
      *
       */
     public int getSectionCount() {
+        if (sectionBounds != null) {
+            return sectionBoundsCount;
+        }
         return (sections == null) ? 1 : sections.size();
     }
 
@@ -188,6 +245,10 @@ public class LineParser {
      *
      */
     public String getSectionAtIndex(int index) throws IndexOutOfBoundsException {
+        if (sectionBounds != null) {
+            checkSectionIndex(index);
+            return line.substring(sectionBounds[2 * index], sectionBounds[2 * index + 1]);
+        }
         List<String> sections = getSections();
         if (index < 0 || index >= sections.size()) {
             throw new IndexOutOfBoundsException();
@@ -224,7 +285,12 @@ public class LineParser {
      *
      */
     public int getSectionAtIndexAsInt(int index, Radix radix) throws IndexOutOfBoundsException, NumberFormatException {
-        return getSectionAtIndexAs(index, s -> Integer.parseInt(s, radix.asInt()));
+        if (sectionBounds != null) {
+            checkSectionIndex(index);
+            return parseInt(line, sectionBounds[2 * index], sectionBounds[2 * index + 1], radix.asInt());
+        }
+        String section = getSectionAtIndex(index);
+        return parseInt(section, 0, section.length(), radix.asInt());
     }
 
     /**
@@ -238,7 +304,370 @@ public class LineParser {
      *
      */
     public double getSectionAtIndexAsDouble(int index) throws IndexOutOfBoundsException, NumberFormatException {
-        return getSectionAtIndexAs(index, Double::parseDouble);
+        if (sectionBounds != null) {
+            checkSectionIndex(index);
+            return parseDouble(line, sectionBounds[2 * index], sectionBounds[2 * index + 1]);
+        }
+        String section = getSectionAtIndex(index);
+        return parseDouble(section, 0, section.length());
+    }
+
+    /**
+     *
+     * Returns the number of tokens in the line. Tokens are the parts of the line separated by spaces
+     * and tabs. This is the number of sections {@code defaultSectionSplit()} gives for a line without
+     * tabs (it only splits on spaces). Tokens are found directly in the line and don't depend on (or
+     * change) the current sections.
+     *
+     * @return number of tokens in the line.
+     *
+     */
+    public int getTokenCount() {
+        int count = 0;
+        int end = line.length();
+        for (int i = 0; i < end; ) {
+            while (i < end && isWhitespace(line.charAt(i))) i++;
+            if (i == end) break;
+            while (i < end && !isWhitespace(line.charAt(i))) i++;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     *
+     * Returns the tokens of the line as ints. No section strings or boxed values are created.
+     *
+     * @param radix number base to use for parsing.
+     * @throws NumberFormatException if one or more tokens can't be converted into ints.
+     * @return an array with one int per token.
+     *
+     */
+    public int[] getTokensAsInts(Radix radix) throws NumberFormatException {
+        int[] values = new int[getTokenCount()];
+        fillTokensAsInts(values, radix);
+        return values;
+    }
+
+    /**
+     *
+     * Returns the tokens of the line as longs. No section strings or boxed values are created.
+     *
+     * @param radix number base to use for parsing.
+     * @throws NumberFormatException if one or more tokens can't be converted into longs.
+     * @return an array with one long per token.
+     *
+     */
+    public long[] getTokensAsLongs(Radix radix) throws NumberFormatException {
+        long[] values = new long[getTokenCount()];
+        fillTokensAsLongs(values, radix);
+        return values;
+    }
+
+    /**
+     *
+     * Returns the tokens of the line as doubles. No section strings or boxed values are created for
+     * plain decimal numbers (like "-12.25"); other notations fall back to {@code Double.parseDouble}.
+     *
+     * @throws NumberFormatException if one or more tokens can't be converted into doubles.
+     * @return an array with one double per token.
+     *
+     */
+    public double[] getTokensAsDoubles() throws NumberFormatException {
+        double[] values = new double[getTokenCount()];
+        fillTokensAsDoubles(values);
+        return values;
+    }
+
+    /**
+     *
+     * Parses the tokens of the line as ints into the supplied array, without allocating anything.
+     *
+     * @param destination array to fill from index 0.
+     * @param radix number base to use for parsing.
+     * @throws NumberFormatException if one or more tokens can't be converted into ints.
+     * @throws IndexOutOfBoundsException if there are more tokens than the array can hold.
+     * @return the number of tokens parsed.
+     *
+     */
+    public int fillTokensAsInts(int[] destination, Radix radix) throws NumberFormatException, IndexOutOfBoundsException {
+        int count = 0;
+        int end = line.length();
+        for (int i = 0; i < end; ) {
+            while (i < end && isWhitespace(line.charAt(i))) i++;
+            if (i == end) break;
+            int start = i;
+            while (i < end && !isWhitespace(line.charAt(i))) i++;
+            if (count == destination.length) {
+                throw new IndexOutOfBoundsException();
+            }
+            destination[count++] = parseInt(line, start, i, radix.asInt());
+        }
+        return count;
+    }
+
+    /**
+     *
+     * Parses the tokens of the line as longs into the supplied array, without allocating anything.
+     *
+     * @param destination array to fill from index 0.
+     * @param radix number base to use for parsing.
+     * @throws NumberFormatException if one or more tokens can't be converted into longs.
+     * @throws IndexOutOfBoundsException if there are more tokens than the array can hold.
+     * @return the number of tokens parsed.
+     *
+     */
+    public int fillTokensAsLongs(long[] destination, Radix radix) throws NumberFormatException, IndexOutOfBoundsException {
+        int count = 0;
+        int end = line.length();
+        for (int i = 0; i < end; ) {
+            while (i < end && isWhitespace(line.charAt(i))) i++;
+            if (i == end) break;
+            int start = i;
+            while (i < end && !isWhitespace(line.charAt(i))) i++;
+            if (count == destination.length) {
+                throw new IndexOutOfBoundsException();
+            }
+            destination[count++] = parseLong(line, start, i, radix.asInt());
+        }
+        return count;
+    }
+
+    /**
+     *
+     * Parses the tokens of the line as doubles into the supplied array. Plain decimal numbers are
+     * parsed without allocating anything.
+     *
+     * @param destination array to fill from index 0.
+     * @throws NumberFormatException if one or more tokens can't be converted into doubles.
+     * @throws IndexOutOfBoundsException if there are more tokens than the array can hold.
+     * @return the number of tokens parsed.
+     *
+     */
+    public int fillTokensAsDoubles(double[] destination) throws NumberFormatException, IndexOutOfBoundsException {
+        int count = 0;
+        int end = line.length();
+        for (int i = 0; i < end; ) {
+            while (i < end && isWhitespace(line.charAt(i))) i++;
+            if (i == end) break;
+            int start = i;
+            while (i < end && !isWhitespace(line.charAt(i))) i++;
+            if (count == destination.length) {
+                throw new IndexOutOfBoundsException();
+            }
+            destination[count++] = parseDouble(line, start, i);
+        }
+        return count;
+    }
+
+    //
+    // Splitting without regular expressions. The splitters follow the rules of String.split: a
+    // delimiter at the very start gives an empty first section, trailing empty sections are
+    // removed and a line without any delimiter is a single section.
+    //
+
+    private static boolean isLiteral(String regex) {
+        for (int i = 0; i < regex.length(); i++) {
+            if (REGEX_META_CHARACTERS.indexOf(regex.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Pattern compiledPattern(String regex) {
+        Pattern pattern = patternCache.get(regex);
+        if (pattern == null) {
+            pattern = Pattern.compile(regex);
+            if (patternCache.size() < MAX_CACHED_PATTERNS) {
+                patternCache.put(regex, pattern);
+            }
+        }
+        return pattern;
+    }
+
+    private void addSectionBounds(int start, int end) {
+        if (sectionBounds == null) {
+            sectionBounds = new int[8];
+        } else if (2 * sectionBoundsCount + 2 > sectionBounds.length) {
+            sectionBounds = Arrays.copyOf(sectionBounds, 2 * sectionBounds.length);
+        }
+        sectionBounds[2 * sectionBoundsCount] = start;
+        sectionBounds[2 * sectionBoundsCount + 1] = end;
+        sectionBoundsCount++;
+    }
+
+    private void removeTrailingEmptySectionBounds() {
+        while (sectionBoundsCount > 0 && sectionBounds[2 * sectionBoundsCount - 1] == sectionBounds[2 * sectionBoundsCount - 2]) {
+            sectionBoundsCount--;
+        }
+    }
+
+    private void splitByLiteral(String delimiter) {
+        int start = 0;
+        int match = line.indexOf(delimiter);
+        if (match < 0) {
+            addSectionBounds(0, line.length());
+            return;
+        }
+        while (match >= 0) {
+            addSectionBounds(start, match);
+            start = match + delimiter.length();
+            match = line.indexOf(delimiter, start);
+        }
+        addSectionBounds(start, line.length());
+        removeTrailingEmptySectionBounds();
+    }
+
+    // Splits by runs of spaces, or of any whitespace (like the regex \s) if anyWhitespace is set
+    private void splitByRuns(boolean anyWhitespace) {
+        int end = line.length();
+        int start = 0;
+        boolean matched = false;
+        for (int i = 0; i < end; ) {
+            char c = line.charAt(i);
+            if (c == ' ' || (anyWhitespace && isRegexWhitespace(c))) {
+                int runEnd = i + 1;
+                while (runEnd < end && (line.charAt(runEnd) == ' ' || (anyWhitespace && isRegexWhitespace(line.charAt(runEnd))))) {
+                    runEnd++;
+                }
+                addSectionBounds(start, i);
+                start = runEnd;
+                i = runEnd;
+                matched = true;
+            } else {
+                i++;
+            }
+        }
+        if (!matched) {
+            addSectionBounds(0, end);
+            return;
+        }
+        addSectionBounds(start, end);
+        removeTrailingEmptySectionBounds();
+    }
+
+    private static boolean isRegexWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private void splitIntoCharacters() {
+        if (line.isEmpty()) {
+            addSectionBounds(0, 0);
+            return;
+        }
+        for (int i = 0; i < line.length(); i++) {
+            addSectionBounds(i, i + 1);
+        }
+    }
+
+    private void checkSectionIndex(int index) {
+        if (index < 0 || index >= sectionBoundsCount) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t';
+    }
+
+    /**
+     *
+     * Parses the characters from (inclusive) to (exclusive) of s as an int, like {@code Integer.parseInt}
+     * but without creating a substring.
+     *
+     */
+    static int parseInt(CharSequence s, int from, int to, int radix) throws NumberFormatException {
+        long value = parseLong(s, from, to, radix);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("Value out of range for an int: \"" + s.subSequence(from, to) + "\"");
+        }
+        return (int) value;
+    }
+
+    /**
+     *
+     * Parses the characters from (inclusive) to (exclusive) of s as a long, like {@code Long.parseLong}
+     * but without creating a substring.
+     *
+     */
+    static long parseLong(CharSequence s, int from, int to, int radix) throws NumberFormatException {
+        if (from >= to) {
+            throw new NumberFormatException("Empty number");
+        }
+        boolean negative = false;
+        int i = from;
+        char first = s.charAt(i);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            i++;
+            if (i == to) {
+                throw new NumberFormatException("For input string: \"" + s.subSequence(from, to) + "\"");
+            }
+        }
+
+        // Accumulate negatively, since the negative range is one larger than the positive
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multiplyLimit = limit / radix;
+        long result = 0;
+        for (; i < to; i++) {
+            int digit = Character.digit(s.charAt(i), radix);
+            if (digit < 0 || result < multiplyLimit) {
+                throw new NumberFormatException("For input string: \"" + s.subSequence(from, to) + "\"");
+            }
+            result *= radix;
+            if (result < limit + digit) {
+                throw new NumberFormatException("For input string: \"" + s.subSequence(from, to) + "\"");
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    // Powers of ten that are exact as doubles
+    private static final double[] EXACT_POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     *
+     * Parses the characters from (inclusive) to (exclusive) of s as a double. Plain decimal numbers with
+     * at most 15 significant digits are computed exactly as digits / 10^decimals, which is correctly
+     * rounded since both parts are exact doubles. Anything else goes through {@code Double.parseDouble}.
+     *
+     */
+    static double parseDouble(CharSequence s, int from, int to) throws NumberFormatException {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+            negative = s.charAt(i) == '-';
+            i++;
+        }
+        long digits = 0;
+        int digitCount = 0;
+        int decimals = 0;
+        boolean seenPoint = false;
+        boolean seenDigit = false;
+        boolean simple = i < to;
+        for (; i < to && simple; i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits = digits * 10 + (c - '0');
+                seenDigit = true;
+                if (digits != 0) digitCount++;
+                if (seenPoint) decimals++;
+            } else if (c == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                simple = false;
+            }
+        }
+        if (simple && seenDigit && digitCount <= 15 && decimals < EXACT_POWERS_OF_TEN.length) {
+            double value = digits / EXACT_POWERS_OF_TEN[decimals];
+            return negative ? -value : value;
+        }
+        return Double.parseDouble(s.subSequence(from, to).toString());
     }
 
     /**
@@ -247,7 +676,15 @@ public class LineParser {
      *
      */
     private void createSectionFromLineIfRequired() {
-        if (sections == null) {
+        if (sectionBounds != null) {
+            // Create the section strings from the recorded offsets
+            sections = new ArrayList<>(sectionBoundsCount);
+            for (int i = 0; i < sectionBoundsCount; i++) {
+                sections.add(line.substring(sectionBounds[2 * i], sectionBounds[2 * i + 1]));
+            }
+            sectionBounds = null;
+            sectionBoundsCount = 0;
+        } else if (sections == null) {
             sections = new ArrayList<>();
             sections.add(line);
         }
@@ -261,6 +698,8 @@ public class LineParser {
      */
     private void invalidatePreviousSections() {
         sections = null;
+        sectionBounds = null;
+        sectionBoundsCount = 0;
     }
 
     /**
@@ -286,7 +725,7 @@ public class LineParser {
     @Override
     public int hashCode() {
         int result = line.hashCode();
-        result = 31 * result + sections.hashCode();
+        result = 31 * result + getSections().hashCode();
         return result;
     }
 }
@@ -59,14 +59,18 @@ public class HashCodeParseExample {
         // Read first "header" line
         //
         assert reader.hasNextLine(): "Input file must have header line.";
-        LineParser header = reader.nextLine().defaultSectionSplit().assertSectionCount(5);
-        List<Integer> headerValues = header.getSectionsAsInts(Radix.Decimal);
+        LineParser header = reader.nextLine();
+        int[] headerValues = header.getTokensAsInts(Radix.Decimal);
+        assert headerValues.length == 5: "Header line must have 5 values.";
 
-        int rowCount = headerValues.get(0);
-        int numSlotsPerRow = headerValues.get(1);
-        int unavailableSlotCount = headerValues.get(2);
-        int requiredPoolCount = headerValues.get(3);
-        int serverCount = headerValues.get(4);
+        int rowCount = headerValues[0];
+        int numSlotsPerRow = headerValues[1];
+        int unavailableSlotCount = headerValues[2];
+        int requiredPoolCount = headerValues[3];
+        int serverCount = headerValues[4];
+
+        // Reused for every line with two values
+        int[] pair = new int[2];
 
         //
         // Get coordinates for unavailable slots
@@ -76,11 +80,9 @@ public class HashCodeParseExample {
 
         assert reader.hasNextLines(unavailableSlotCount): "Not enough unavailable slots text-lines";
         for(LineParser line : reader.nextLines(unavailableSlotCount)) {
-            line.defaultSectionSplit().assertSectionCount(2);
-            unavailableSlots.add(new ServerPos(
-                    line.getSectionAtIndexAsInt(0, Radix.Decimal),
-                    line.getSectionAtIndexAsInt(1, Radix.Decimal)
-            ));
+            int count = line.fillTokensAsInts(pair, Radix.Decimal);
+            assert count == 2: "Unavailable slot lines must have 2 values.";
+            unavailableSlots.add(new ServerPos(pair[0], pair[1]));
         }
 
         //
@@ -91,11 +93,9 @@ public class HashCodeParseExample {
 
         assert reader.hasNextLines(serverCount): "Not enough server text-lines";
         for(LineParser line : reader.nextLines(serverCount)) {
-            line.defaultSectionSplit().assertSectionCount(2);
-            servers.add(new Server(
-                    line.getSectionAtIndexAsInt(0, Radix.Decimal),
-                    line.getSectionAtIndexAsInt(1, Radix.Decimal)
-            ));
+            int count = line.fillTokensAsInts(pair, Radix.Decimal);
+            assert count == 2: "Server lines must have 2 values.";
+            servers.add(new Server(pair[0], pair[1]));
         }
 
         System.out.println("Done! Time to perform actual calculations");